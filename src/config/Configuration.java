@@ -3,7 +3,8 @@ package config;
 import utils.LogWriter;
 
 /**
- * This class is simply to have a centrally defined log writer.
+ * This class is simply to have a centrally defined log writer and shared
+ * limits.
  * 
  * @author 190021081
  */
@@ -11,4 +12,24 @@ public abstract class Configuration {
 
     public static final LogWriter LOG = new LogWriter(true);
 
+    // the most WordsAPI requests that may be in flight at once
+    public static final int MAX_CONCURRENT_REQUESTS = 8;
+
+    // the most WordsAPI requests and time per session that neighbour warming may spend
+    public static final int WARMING_REQUEST_BUDGET = 250;
+    public static final long WARMING_TIME_BUDGET_MS = 5 * 60 * 1000;
+
+    // the greatest phonetic distance between the rhymes of a forced rhyme
+    public static final int MAX_FORCED_RHYME_DISTANCE = 3;
+
+    // the most suggestions found per search; more can be asked for
+    public static final int SUGGESTION_LIMIT = 50;
+
+    // the most time and WordsAPI requests a search may spend before showing what it has found so far
+    public static final long SUGGESTION_TIME_BUDGET_MS = 15 * 1000;
+    public static final int SUGGESTION_REQUEST_BUDGET = 150;
+
+    // how far a spelling-based syllable estimate may be from the target before a suggestion is dropped unseen
+    public static final int SYLLABLE_ESTIMATE_TOLERANCE = 1;
+
 }
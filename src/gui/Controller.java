@@ -1,6 +1,9 @@
 package gui;
 
 import static config.Configuration.LOG;
+import static config.Configuration.SUGGESTION_LIMIT;
+import static config.Configuration.WARMING_REQUEST_BUDGET;
+import static config.Configuration.WARMING_TIME_BUDGET_MS;
 
 import java.io.File;
 import java.io.IOException;
@@ -9,8 +12,8 @@ import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
+import java.util.function.Consumer;
 
-import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.event.Event;
 import javafx.fxml.FXML;
@@ -18,6 +21,8 @@ import javafx.geometry.Insets;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.Button;
+import javafx.scene.control.ButtonBar.ButtonData;
+import javafx.scene.control.ButtonType;
 import javafx.scene.control.CheckBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.RadioButton;
@@ -44,9 +49,14 @@ import utils.ParameterWrappers.FilterParameters.RhymeType;
 import utils.ParameterWrappers.SuggestionPoolParameters;
 import utils.ParameterWrappers.SuggestionPoolParameters.SuggestionPool;
 import words.PartOfSpeech;
+import words.DeviceScanner;
+import words.NeighbourWarmer;
 import words.Poem;
 import words.RhymeScheme;
 import words.Stanza;
+import words.SuggestionCache;
+import words.SuggestionSearch;
+import words.StressSignature;
 import words.SuperWord;
 import words.Token;
 
@@ -58,12 +68,18 @@ import words.Token;
 public class Controller {
 
     private static final String SUGGESTION_CLASS = "suggestion";
+    // rendering of the suggestion labels
+    private static final boolean SUGGESTION_SNAP_TO_PIXEL = true;
+    private static final boolean SUGGESTION_CACHE = false;
+    private static final int MAX_SPELLING_CHOICES = 4; // known words offered in place of an unseen one
     private static final String SEE_LOG = "See log for more information.";
 
     private Poem poem;
     private IndexedTokenLabel focusedToken;
     private IndexedTokenLabel secondFocusedToken; // for joining two token together
     private File poemFile;
+    private GetSuggestionsTask suggestionsTask; // the latest search for suggestions
+    private Label suggestionsStatus; // shows the latest search's progress, after the suggestions streamed so far
 
     // Poem & stanza info
     @FXML
@@ -81,7 +97,8 @@ public class Controller {
     @FXML
     FlowPane flwpnLine0;
     @FXML
-    Label lblPoemStanzaCount, lblPoemLineCount, lblStanzaNumber, lblStanzaLineCount, lblActRhymeScheme;
+    Label lblPoemStanzaCount, lblPoemLineCount, lblPoemDevices, lblStanzaNumber, lblStanzaLineCount,
+            lblActRhymeScheme, lblInternalRhymes, lblStanzaDevices;
     @FXML
     TextField txtfldDefaultRhymeScheme, txtfldIntRhymeScheme;
     @FXML
@@ -103,7 +120,7 @@ public class Controller {
     @FXML
     GridPane grdPnFilters;
     EnumMap<RhymeType, CheckBox> rhymeTypeCheckBoxes = new EnumMap<>(RhymeType.class);
-    CheckBox chbxSyllableCount;
+    CheckBox chbxSyllableCount, chbxPreserveMeter;
     @FXML
     TextField txtfldRhymeWith;
 
@@ -123,6 +140,8 @@ public class Controller {
         initSuggestionPoolCheckBoxes();
         initFilterCheckBoxes();
 
+        NeighbourWarmer.startSession(WARMING_REQUEST_BUDGET, WARMING_TIME_BUDGET_MS);
+
         IndexedTokenLabel.setJoinWordsAction(actionEvent -> {
             if (focusedToken == null || secondFocusedToken == null) {
                 Alert alert = buildCleanAlert(AlertType.INFORMATION);
@@ -208,9 +227,6 @@ public class Controller {
 
         // add rhyme type checkboxes
         for (RhymeType filter : RhymeType.values()) {
-            if (filter.equals(RhymeType.FORCED_RHYME)) {
-                continue; // not implemented yet
-            }
             CheckBox checkBox = buildRhymeTypeCheckBox(filter);
             grdPnFilters.addRow(row++, checkBox);
             rhymeTypeCheckBoxes.put(filter, checkBox);
@@ -222,7 +238,11 @@ public class Controller {
         grdPnFilters.addRow(row++, separator);
         chbxSyllableCount = buildFilterCheckBox("syllable count", "Suggestions must match the word's syllable count.");
         chbxSyllableCount.setDisable(true); // word dependent
-        grdPnFilters.addRow(row, chbxSyllableCount);
+        grdPnFilters.addRow(row++, chbxSyllableCount);
+        chbxPreserveMeter = buildFilterCheckBox("preserve meter",
+                "Suggestions must keep the word's pattern of stressed syllables.");
+        chbxPreserveMeter.setDisable(true); // word dependent
+        grdPnFilters.addRow(row, chbxPreserveMeter);
     }
 
     private TextFormatter<String> buildRhymeSchemeFormatter() {
@@ -333,19 +353,28 @@ public class Controller {
     }
 
     /*
-     * Constructs the filter parameters from the relevant checkboxes.
+     * The stress pattern of the focused word, as its selected part of speech.
+     */
+    private StressSignature getFocusedMeter() {
+        return ((SuperWord) focusedToken.getToken()).getStressSignature(focusedToken.getPos());
+    }
+
+    /*
+     * Constructs the filter parameters from the relevant checkboxes. Returns null
+     * if the user cancelled, in which case there should be no search.
      */
     private FilterParameters getFilterParams() {
         FilterParameters params = new FilterParameters();
 
         params.setSyllableCountFilter(chbxSyllableCount.isSelected() && !chbxSyllableCount.isDisabled());
+        if (chbxPreserveMeter.isSelected() && !chbxPreserveMeter.isDisabled()) {
+            params.setMeter(getFocusedMeter());
+        }
 
         List<RhymeType> chosenRhymeTypes = new ArrayList<>();
 
         // iterate over rhyme checkboxes to see which (if any) are ticked
         for (RhymeType rhymeType : RhymeType.values()) {
-            if (rhymeType.equals(RhymeType.FORCED_RHYME))
-                continue; // not implemented yet
             if (rhymeTypeCheckBoxes.get(rhymeType).isSelected() && !rhymeTypeCheckBoxes.get(rhymeType).isDisabled()) {
                 chosenRhymeTypes.add(rhymeType);
             }
@@ -379,7 +408,29 @@ public class Controller {
             } else {
                 // get rhyme from text field
                 SuperWord matchWith = SuperWord.getSuperWord(txtfldRhymeWith.getText());
-                matchWith.populate();
+                ArrayList<String> didYouMean = matchWith.populate(true);
+                if (!didYouMean.isEmpty()) {
+                    // possibly a typo, so let the user decide before spending a request
+                    Alert alert = buildCleanAlert(AlertType.CONFIRMATION);
+                    alert.setHeaderText(String.format("\"%s\" has not been seen before.", matchWith.getPlaintext()));
+                    alert.setContentText(
+                            "It is close to the words below, so might be misspelt. Pick one to rhyme with instead, or look it up anyway.");
+                    ButtonType lookUp = new ButtonType("Look it up", ButtonData.OK_DONE);
+                    alert.getButtonTypes().setAll(lookUp, ButtonType.CANCEL);
+                    for (String candidate : didYouMean.subList(0, Math.min(MAX_SPELLING_CHOICES, didYouMean.size()))) {
+                        alert.getButtonTypes().add(0, new ButtonType(candidate, ButtonData.OTHER));
+                    }
+
+                    ButtonType choice = alert.showAndWait().orElse(ButtonType.CANCEL);
+                    if (choice == ButtonType.CANCEL) {
+                        return null;
+                    } else if (choice != lookUp) {
+                        // a known word, so this will not ask again
+                        txtfldRhymeWith.setText(choice.getText());
+                        return getFilterParams();
+                    }
+                    matchWith.populate();
+                }
                 System.out.println(matchWith);
                 params.setMatchPoS(null);
                 // iterate over rhyme checkboxes to see which are ticked
@@ -445,6 +496,7 @@ public class Controller {
         // prevents the user from attempting to match syllables against an unknown
         SuperWord superword = ((SuperWord) focusedToken.getToken());
         chbxSyllableCount.setDisable(superword.getSyllableCount(null) <= 0);
+        chbxPreserveMeter.setDisable(getFocusedMeter() == null);
     }
 
     /**
@@ -464,6 +516,59 @@ public class Controller {
             txtfldIntRhymeScheme.setText("");
         }
         lblActRhymeScheme.setText(focusedStanza.getActualRhymeScheme().toString());
+        showInternalRhymes(focusedStanza.getInternalRhymes());
+
+        updateDevices(stanzaIndex);
+    }
+
+    /*
+     * Shows each group of internal rhymes as its words joined by "/", with where
+     * they are in the tooltip.
+     */
+    private void showInternalRhymes(List<Stanza.RhymeGroup> groups) {
+        StringBuilder text = new StringBuilder();
+        StringBuilder details = new StringBuilder();
+        for (Stanza.RhymeGroup group : groups) {
+            text.append(text.length() == 0 ? "" : ", ");
+            for (int i = 0; i < group.getWords().size(); i++) {
+                text.append(i == 0 ? "" : "/").append(group.getWords().get(i).getPlaintext());
+            }
+            details.append(details.length() == 0 ? "" : "\n").append(group.toString());
+        }
+        lblInternalRhymes.setText(groups.isEmpty() ? "none" : text.toString());
+        lblInternalRhymes.setTooltip(groups.isEmpty() ? null : new Tooltip(details.toString()));
+    }
+
+    /*
+     * Scans the whole poem for devices, and shows them for the poem and (unless
+     * -1) the focused stanza. Words not yet looked up are estimated, so this never
+     * waits on WordsAPI.
+     */
+    private void updateDevices(int stanzaIndex) {
+        List<DeviceScanner.Cluster> clusters = DeviceScanner.scan(poem);
+        showDevices(lblPoemDevices, clusters, true);
+        if (stanzaIndex >= 0) {
+            List<DeviceScanner.Cluster> inStanza = new ArrayList<>();
+            for (DeviceScanner.Cluster cluster : clusters) {
+                if (cluster.getStanzaIndex() == stanzaIndex) {
+                    inStanza.add(cluster);
+                }
+            }
+            showDevices(lblStanzaDevices, inStanza, false);
+        }
+    }
+
+    private void showDevices(Label label, List<DeviceScanner.Cluster> clusters, boolean showStanza) {
+        label.setText(DeviceScanner.summarise(clusters));
+        StringBuilder details = new StringBuilder();
+        for (DeviceScanner.Cluster cluster : clusters) {
+            details.append(details.length() == 0 ? "" : "\n");
+            if (showStanza) {
+                details.append(String.format("stanza %d: ", cluster.getStanzaIndex() + 1));
+            }
+            details.append(cluster.toString());
+        }
+        label.setTooltip(clusters.isEmpty() ? null : new Tooltip(details.toString()));
     }
 
     /**
@@ -499,6 +604,7 @@ public class Controller {
         enableSuggestionPoolBoxes();
         chbxInclUnknown.setSelected(focusOnToken.getInclUnknown());
         btnGetSuggestions.setDisable(!hasSubWords);
+        NeighbourWarmer.warmNeighbours(superword);
         enableFilterBoxes();
         displaySuggestions();
     }
@@ -618,25 +724,94 @@ public class Controller {
             PartOfSpeech pos = focusedToken.getPos();
             SuggestionPoolParameters suggestionParams = focusedToken.getPoolParams();
             FilterParameters filterParams = getFilterParams();
+            if (filterParams == null) {
+                return;
+            }
 
-            Task<ArrayList<SuperWord>> task = new GetSuggestionsTask(superWord, pos, suggestionParams, filterParams);
+            // revisiting a word with the same parameters shows the earlier search at once
+            SuggestionCache.Key key = SuggestionCache.key(superWord, pos, suggestionParams, filterParams);
+            SuggestionSearch cached = SuggestionCache.get(key);
+            if (cached != null) {
+                if (suggestionsTask != null) {
+                    suggestionsTask.cancel();
+                }
+                focusedToken.setSuggestions(cached.getReturned());
+                focusedToken.setSuggestionSearch(cached);
+                displaySuggestions();
+                LOG.writeTempLog(String.format("Showing cached suggestions for \"%s\"; suggestion cache: %s",
+                        superWord.getPlaintext(), SuggestionCache.getStatistics()));
+                return;
+            }
 
-            IndexedTokenLabel currentFocusPointer = focusedToken;
+            GetSuggestionsTask task = new GetSuggestionsTask(superWord, pos, suggestionParams, filterParams,
+                    SUGGESTION_LIMIT, streamTo(focusedToken));
+            runSuggestionsTask(task, focusedToken, key);
+        }
+    }
 
-            task.setOnSucceeded(v -> {
-                if (currentFocusPointer != null) {
-                    currentFocusPointer.setSuggestions(task.getValue());
-                    if (currentFocusPointer.equals(focusedToken))
-                        displaySuggestions();
+    /*
+     * Carries on the focused token's search for suggestions from where it stopped,
+     * adding to the suggestions already found.
+     */
+    private void getMoreSuggestions() {
+        GetSuggestionsTask task = new GetSuggestionsTask(focusedToken.getSuggestionSearch(), SUGGESTION_LIMIT,
+                streamTo(focusedToken));
+        runSuggestionsTask(task, focusedToken, null);
+    }
+
+    /*
+     * Shows suggestions as they are found, if the token is still focused.
+     */
+    private Consumer<List<SuperWord>> streamTo(IndexedTokenLabel currentFocusPointer) {
+        return batch -> {
+            if (currentFocusPointer.equals(focusedToken)) {
+                for (SuperWord suggestion : batch) {
+                    addSuggestionLabel(suggestion);
                 }
-            });
+            }
+        };
+    }
 
+    /*
+     * Runs a search for suggestions in a daemon thread. A new search (with a key)
+     * is cached once it succeeds; one carried on from the cache is already there.
+     */
+    private void runSuggestionsTask(GetSuggestionsTask task, IndexedTokenLabel currentFocusPointer,
+            SuggestionCache.Key key) {
+        boolean more = key == null;
+        // only the latest search is shown
+        if (suggestionsTask != null) {
+            suggestionsTask.cancel();
+        }
+        suggestionsTask = task;
+
+        task.setOnSucceeded(v -> {
+            SuggestionSearch search = task.getSearch();
+            // a search cut short is not cached, so that asking again starts afresh
+            if (key != null && !search.isPartial()) {
+                SuggestionCache.put(key, search);
+            }
+            currentFocusPointer.setSuggestions(search.getReturned());
+            currentFocusPointer.setSuggestionSearch(search);
+            if (currentFocusPointer.equals(focusedToken))
+                displaySuggestions();
+        });
+
+        Label status = new Label("Searching and/or filtering...");
+        status.setSnapToPixel(SUGGESTION_SNAP_TO_PIXEL);
+        status.setCache(SUGGESTION_CACHE);
+        status.textProperty().bind(task.messageProperty());
+        suggestionsStatus = status;
+        if (more) {
+            // keep the suggestions already shown, replacing the "More..." label
+            flwpnSuggestions.getChildren().remove(flwpnSuggestions.getChildren().size() - 1);
+        } else {
             flwpnSuggestions.getChildren().clear();
-            flwpnSuggestions.getChildren().add(new Label("Searching and/or filtering..."));
-            Thread suggestionsThread = new Thread(task);
-            suggestionsThread.setDaemon(true);
-            suggestionsThread.start();
         }
+        flwpnSuggestions.getChildren().add(status);
+        Thread suggestionsThread = new Thread(task);
+        suggestionsThread.setDaemon(true);
+        suggestionsThread.start();
     }
 
     /*
@@ -805,6 +980,7 @@ public class Controller {
             txtfldDefaultRhymeScheme.clear();
             lblPoemStanzaCount.setText(String.valueOf(poem.getStanzaCount()));
             lblPoemLineCount.setText(String.valueOf(poem.getLineCount()));
+            updateDevices(-1);
             tokenizePoem();
             tgbtnDirectEdit.setDisable(false);
         } catch (IOException e) {
@@ -928,6 +1104,7 @@ public class Controller {
 
         lblPoemStanzaCount.setText(String.valueOf(poem.getStanzaCount()));
         lblPoemLineCount.setText(String.valueOf(poem.getLineCount()));
+        updateDevices(-1);
 
         // (un)hide text area
         txtarPoem.setVisible(!txtarPoem.isVisible());
@@ -937,35 +1114,56 @@ public class Controller {
     }
 
     private void displaySuggestions() {
-        boolean snapToPixel = true;
-        boolean cache = false;
         flwpnSuggestions.getChildren().clear();
-        flwpnSuggestions.setSnapToPixel(snapToPixel);
-        flwpnSuggestions.setCache(cache);
-        flwpnSuggestions.getParent().setCache(cache);
+        flwpnSuggestions.setSnapToPixel(SUGGESTION_SNAP_TO_PIXEL);
+        flwpnSuggestions.setCache(SUGGESTION_CACHE);
+        flwpnSuggestions.getParent().setCache(SUGGESTION_CACHE);
 
         if (focusedToken.getSuggestions() == null) {
             Label noSuggestions = new Label("Suggestions appear here.");
-            noSuggestions.setSnapToPixel(snapToPixel);
-            noSuggestions.setCache(cache);
+            noSuggestions.setSnapToPixel(SUGGESTION_SNAP_TO_PIXEL);
+            noSuggestions.setCache(SUGGESTION_CACHE);
 
             flwpnSuggestions.getChildren().add(noSuggestions);
         } else if (focusedToken.getSuggestions().isEmpty()) {
             Label noSuggestions = new Label("No results.");
-            noSuggestions.setSnapToPixel(snapToPixel);
-            noSuggestions.setCache(cache);
+            noSuggestions.setSnapToPixel(SUGGESTION_SNAP_TO_PIXEL);
+            noSuggestions.setCache(SUGGESTION_CACHE);
 
             flwpnSuggestions.getChildren().add(noSuggestions);
         } else {
             for (SuperWord suggestion : focusedToken.getSuggestions()) {
-                Label label = new Label(suggestion.getPlaintext());
-                label.getStyleClass().add(SUGGESTION_CLASS);
-                label.setSnapToPixel(snapToPixel);
-                label.setCache(cache);
-                label.setOnMouseClicked(actionEvent -> makeSubstitution(suggestion));
-                flwpnSuggestions.getChildren().add(label);
+                addSuggestionLabel(suggestion);
             }
         }
+
+        SuggestionSearch search = focusedToken.getSuggestionSearch();
+        if (search != null && search.hasMore()) {
+            Label more = new Label(search.isPartial() ? "More... (search stopped early)" : "More...");
+            more.getStyleClass().add(SUGGESTION_CLASS);
+            more.setSnapToPixel(SUGGESTION_SNAP_TO_PIXEL);
+            more.setCache(SUGGESTION_CACHE);
+            more.setOnMouseClicked(actionEvent -> getMoreSuggestions());
+            flwpnSuggestions.getChildren().add(more);
+        }
+    }
+
+    /*
+     * Adds a suggestion after those shown, but before the status of a search that
+     * is still running.
+     */
+    private void addSuggestionLabel(SuperWord suggestion) {
+        Label label = new Label(suggestion.getPlaintext());
+        label.getStyleClass().add(SUGGESTION_CLASS);
+        label.setSnapToPixel(SUGGESTION_SNAP_TO_PIXEL);
+        label.setCache(SUGGESTION_CACHE);
+        label.setOnMouseClicked(actionEvent -> makeSubstitution(suggestion));
+        int status = flwpnSuggestions.getChildren().indexOf(suggestionsStatus);
+        if (status == -1) {
+            flwpnSuggestions.getChildren().add(label);
+        } else {
+            flwpnSuggestions.getChildren().add(status, label);
+        }
     }
 
 }
@@ -1,37 +1,170 @@
 package gui;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.function.Consumer;
 
+import javafx.application.Platform;
 import javafx.concurrent.Task;
 import utils.ParameterWrappers.FilterParameters;
 import utils.ParameterWrappers.SuggestionPoolParameters;
 import words.PartOfSpeech;
+import words.SearchBudget;
+import words.SuggestionEvent;
+import words.SuggestionSearch;
 import words.SuperWord;
 
+import static config.Configuration.LOG;
+import static config.Configuration.SUGGESTION_REQUEST_BUDGET;
+import static config.Configuration.SUGGESTION_TIME_BUDGET_MS;
+
 /**
  * A Task class to handle suggestion discovery and filtering in a separate
  * thread.
- * 
+ *
+ * Suggestions are streamed as they pass the filters, and handed to the GUI in
+ * batches: however many arrive before the GUI thread next runs. Only as many
+ * events as the GUI has caught up with are requested, so a slow GUI holds back
+ * filtering rather than queueing up work.
+ *
+ * Each run is bounded by {@link config.Configuration#SUGGESTION_TIME_BUDGET_MS}
+ * and {@link config.Configuration#SUGGESTION_REQUEST_BUDGET}, after which the
+ * suggestions found so far are returned and the search can be carried on.
+ *
  * @author 190021081
  */
 public class GetSuggestionsTask extends Task<ArrayList<SuperWord>> {
 
+    // the most events that may be waiting for the GUI thread
+    private static final int MAX_PENDING_EVENTS = 64;
+
     private final SuperWord superWord;
     private final PartOfSpeech pos;
     private final SuggestionPoolParameters suggestionParams;
     private final FilterParameters filterParams;
+    private final int limit;
+    private final Consumer<List<SuperWord>> onBatch;
+    private volatile SuggestionSearch search;
 
+    /**
+     * Starts a new search.
+     * 
+     * @param superWord        the word to get suggestions for.
+     * @param pos              the part of speech of the word.
+     * @param suggestionParams which suggestion pools to draw from.
+     * @param filterParams     the filters suggestions must pass.
+     * @param limit            the most suggestions to find.
+     * @param onBatch          run on the GUI thread with each batch of suggestions
+     *                         that pass, in order, while the task is running.
+     */
     public GetSuggestionsTask(SuperWord superWord, PartOfSpeech pos, SuggestionPoolParameters suggestionParams,
-            FilterParameters filterParams) {
+            FilterParameters filterParams, int limit, Consumer<List<SuperWord>> onBatch) {
         this.superWord = superWord;
         this.pos = pos;
         this.suggestionParams = suggestionParams;
         this.filterParams = filterParams;
+        this.limit = limit;
+        this.onBatch = onBatch;
+    }
+
+    /**
+     * Carries on from where an earlier search stopped.
+     * 
+     * @param search  the search.
+     * @param limit   the most further suggestions to find.
+     * @param onBatch run on the GUI thread with each batch of suggestions that
+     *                pass, in order, while the task is running.
+     */
+    public GetSuggestionsTask(SuggestionSearch search, int limit, Consumer<List<SuperWord>> onBatch) {
+        this(null, null, null, null, limit, onBatch);
+        this.search = search;
+    }
+
+    /**
+     * @return the search, once started, so that more suggestions can be found
+     *         later.
+     */
+    public SuggestionSearch getSearch() {
+        return search;
     }
 
     @Override
     protected ArrayList<SuperWord> call() throws Exception {
-        return superWord.getFilteredSuggestions(pos, suggestionParams, filterParams);
+        updateMessage("Searching and/or filtering...");
+        if (search == null) {
+            search = superWord.searchSuggestions(pos, suggestionParams, filterParams);
+        }
+        SubmissionPublisher<SuggestionEvent> publisher = new SubmissionPublisher<>();
+        publisher.subscribe(new BatchingSubscriber());
+        // bounded, so that the user always gets something back promptly
+        return search.next(limit, new SearchBudget(SUGGESTION_TIME_BUDGET_MS, SUGGESTION_REQUEST_BUDGET),
+                publisher);
+    }
+
+    /*
+     * Collects events until the GUI thread is free, then hands over everything
+     * collected in one go.
+     */
+    private class BatchingSubscriber implements Flow.Subscriber<SuggestionEvent> {
+        private Flow.Subscription subscription;
+        // guarded by this
+        private ArrayList<SuperWord> pending = new ArrayList<>();
+        private int pendingEvents = 0;
+        private boolean drainScheduled = false;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(MAX_PENDING_EVENTS);
+        }
+
+        @Override
+        public void onNext(SuggestionEvent event) {
+            updateProgress(event.getChecked(), event.getTotal());
+            updateMessage(String.format("Searching and/or filtering... checked %d of %d", event.getChecked(),
+                    event.getTotal()));
+            synchronized (this) {
+                if (!event.isProgress()) {
+                    pending.add(event.getSuggestion());
+                }
+                pendingEvents++;
+                if (!drainScheduled) {
+                    drainScheduled = true;
+                    Platform.runLater(this::drain);
+                }
+            }
+        }
+
+        /*
+         * Runs on the GUI thread.
+         */
+        private void drain() {
+            ArrayList<SuperWord> batch;
+            int events;
+            synchronized (this) {
+                batch = pending;
+                events = pendingEvents;
+                pending = new ArrayList<>();
+                pendingEvents = 0;
+                drainScheduled = false;
+            }
+            // once the task is done, the full result is shown instead
+            if (!batch.isEmpty() && isRunning()) {
+                onBatch.accept(batch);
+            }
+            subscription.request(events);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            LOG.writeTempLog("Suggestion stream failed: " + throwable);
+        }
+
+        @Override
+        public void onComplete() {
+        }
     }
 
 }
@@ -13,6 +13,7 @@ import javafx.scene.layout.FlowPane;
 
 import utils.ParameterWrappers.SuggestionPoolParameters;
 import words.PartOfSpeech;
+import words.SuggestionSearch;
 import words.SuperWord;
 import words.Token;
 
@@ -38,6 +39,7 @@ public class IndexedTokenLabel extends Label {
     private SuggestionPoolParameters poolParams = new SuggestionPoolParameters();
     private boolean inclUnknown = true;
     private ArrayList<SuperWord> suggestions;
+    private SuggestionSearch suggestionSearch; // to find more suggestions, if there are any
     private Controller controller;
 
     // getters
@@ -73,6 +75,10 @@ public class IndexedTokenLabel extends Label {
         return suggestions;
     }
 
+    public SuggestionSearch getSuggestionSearch() {
+        return suggestionSearch;
+    }
+
     @Override
     /**
      * {@inheritDoc}
@@ -110,6 +116,10 @@ public class IndexedTokenLabel extends Label {
         this.suggestions = suggestions;
     }
 
+    public void setSuggestionSearch(SuggestionSearch suggestionSearch) {
+        this.suggestionSearch = suggestionSearch;
+    }
+
     // other
 
     /**
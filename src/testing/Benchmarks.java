@@ -0,0 +1,110 @@
+package testing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import utils.Pair;
+import utils.ParameterWrappers.FilterParameters.RhymeType;
+import words.Emphasis;
+import words.IPAHandler;
+import words.Syllable;
+import words.Pronunciation.SubPronunciation;
+
+import static config.Configuration.LOG;
+
+/**
+ * Microbenchmarks for comparing implementations. These are rough timings
+ * (warmed up, best of several rounds) rather than a full benchmarking harness,
+ * and need no network access.
+ *
+ * @author 190021081
+ */
+public class Benchmarks {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+
+    // stops the JIT discarding results that are never used
+    private static int sink = 0;
+
+    private interface Matcher {
+        boolean matches(SubPronunciation sub1, RhymeType rhymeType, SubPronunciation sub2);
+    }
+
+    /*
+     * Generates pronunciations from a small alphabet, so that a realistic share of
+     * pairs rhyme.
+     */
+    private static List<SubPronunciation> buildCorpus(int size) {
+        String alphabet = "æɪəeɪaʊtnsʃkrlmd'',";
+        String vowels = "æɪəeaʊ";
+        Random random = new Random(190021081);
+        List<SubPronunciation> corpus = new ArrayList<>();
+        while (corpus.size() < size) {
+            StringBuilder ipa = new StringBuilder();
+            int length = 2 + random.nextInt(10);
+            for (int j = 0; j < length; j++) {
+                ipa.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            ipa.insert(random.nextInt(length + 1), vowels.charAt(random.nextInt(vowels.length())));
+            Pair<ArrayList<Syllable>, Emphasis> parsed = IPAHandler.getSyllables(ipa.toString());
+            corpus.add(new SubPronunciation(ipa.toString(), parsed.one(), parsed.two()));
+        }
+        return corpus;
+    }
+
+    /*
+     * Returns the best time per comparison, in nanoseconds, of matching every pair
+     * in the corpus.
+     */
+    private static double time(List<SubPronunciation> corpus, RhymeType rhymeType, Matcher matcher) {
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (SubPronunciation sub1 : corpus) {
+                for (SubPronunciation sub2 : corpus) {
+                    if (matcher.matches(sub1, rhymeType, sub2)) {
+                        sink++;
+                    }
+                }
+            }
+            double perComparison = (double) (System.nanoTime() - start) / (corpus.size() * corpus.size());
+            if (round >= WARMUP_ROUNDS) {
+                best = Math.min(best, perComparison);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Compares rhyme recognition over lists of syllables with recognition over
+     * rhyme fingerprints, for every type of rhyme.
+     */
+    private static void benchmarkMatchesWith(int corpusSize) {
+        List<SubPronunciation> corpus = buildCorpus(corpusSize);
+        System.out.println(String.format("matchesWith over %d x %d pronunciations (ns per comparison)", corpusSize,
+                corpusSize));
+        System.out.println(String.format("%-16s %12s %12s %8s", "rhyme type", "lists", "fingerprints", "speedup"));
+        for (RhymeType rhymeType : RhymeType.values()) {
+            double lists = time(corpus, rhymeType, (sub1, type, sub2) -> sub1.matchesWithSyllableLists(type, sub2));
+            double prints = time(corpus, rhymeType, (sub1, type, sub2) -> sub1.matchesWith(type, sub2));
+            System.out.println(String.format("%-16s %12.1f %12.1f %7.1fx", rhymeType.name(), lists, prints,
+                    lists / prints));
+        }
+    }
+
+    public static void main(String[] args) {
+        String usage = "java -cp lib/json-20210307.jar:src/ testing.Benchmarks [ matches [<corpus size>] ]";
+
+        if (args.length < 1 || args[0].equalsIgnoreCase("matches")) {
+            int corpusSize = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+            benchmarkMatchesWith(corpusSize);
+        } else {
+            System.err.println(usage);
+        }
+        LOG.writeTempLog("Benchmarks sink: " + sink);
+        LOG.closeLogWriters();
+    }
+
+}
@@ -12,12 +12,17 @@ import utils.ParameterWrappers.FilterParameters;
 import utils.ParameterWrappers.SuggestionPoolParameters;
 import utils.ParameterWrappers.FilterParameters.RhymeType;
 import utils.ParameterWrappers.SuggestionPoolParameters.SuggestionPool;
+import words.DeviceScanner;
 import words.Emphasis;
 import words.IPAHandler;
 import words.PartOfSpeech;
 import words.Poem;
+import words.Pronunciation;
+import words.RhymeDictionary;
+import words.Stanza;
 import words.SuperWord;
 import words.Syllable;
+import words.Token;
 
 import static config.Configuration.LOG;
 
@@ -83,6 +88,7 @@ public class Demos {
             wordObject.populate();
             System.out.println(wordObject.toFullString());
         }
+        System.out.println("Parsed IPA memo: " + Pronunciation.getParseStatistics());
     }
 
     private static void subWordConstructor() {
@@ -122,6 +128,83 @@ public class Demos {
         }
     }
 
+    /*
+     * Populates every word of the poem first, as the scanner only covers populated
+     * words.
+     */
+    private static void demoDevices(String poemFile) {
+        try {
+            Poem poem = new Poem(FileSystems.getDefault().getPath(poemFile));
+            ArrayList<SuperWord> words = new ArrayList<>();
+            for (Stanza stanza : poem.getStanzas()) {
+                for (ArrayList<Token> line : stanza.getLines()) {
+                    for (Token token : line) {
+                        if (token instanceof SuperWord) {
+                            words.add((SuperWord) token);
+                        }
+                    }
+                }
+            }
+            SuperWord.populateAll(words);
+
+            long start = System.nanoTime();
+            List<DeviceScanner.Cluster> clusters = DeviceScanner.scan(poem);
+            long elapsed = System.nanoTime() - start;
+            int stanzaIndex = -1;
+            for (DeviceScanner.Cluster cluster : clusters) {
+                if (cluster.getStanzaIndex() != stanzaIndex) {
+                    stanzaIndex = cluster.getStanzaIndex();
+                    System.out.println(String.format("Stanza %d", stanzaIndex + 1));
+                }
+                System.out.println("\t" + cluster);
+            }
+            System.out.println(String.format("%s (%d words scanned in %.2f ms)", DeviceScanner.summarise(clusters),
+                    words.size(), elapsed / 1e6));
+        } catch (IOException e) {
+            System.err.println("Something went wrong: " + e.getMessage());
+        }
+    }
+
+    private static RhymeType rhymeTypeFromString(String string) {
+        for (RhymeType rhymeType : RhymeType.values()) {
+            if (rhymeType.name().equalsIgnoreCase(string) || rhymeType.getLabel().equalsIgnoreCase(string)
+                    || rhymeType.getLabel().split(" ")[0].equalsIgnoreCase(string)) {
+                return rhymeType;
+            }
+        }
+        return null;
+    }
+
+    /*
+     * The rhyming dictionary only knows populated words, so this populates the
+     * word, its synonyms and similar words, and the demo words first. Pages are
+     * numbered from 1.
+     */
+    private static void demoRhymingDictionary(String word, RhymeType rhymeType, int syllableCount,
+            PartOfSpeech pos, int page) {
+        final int pageSize = 20;
+        SuperWord superWord = SuperWord.getSuperWord(word);
+        ArrayList<SuperWord> toPopulate = new ArrayList<>();
+        for (String plaintext : plaintexts) {
+            toPopulate.add(SuperWord.getSuperWord(plaintext));
+        }
+        for (SuggestionPool pool : Arrays.asList(SuggestionPool.SYNONYMS, SuggestionPool.SIMILAR_TO)) {
+            ArrayList<SuperWord> neighbours = superWord.getSuggestionPool(pool, PartOfSpeech.UNKNOWN, true);
+            if (neighbours != null) {
+                toPopulate.addAll(neighbours);
+            }
+        }
+        SuperWord.populateAll(toPopulate);
+
+        ArrayList<Pair<SuperWord, Integer>> results = RhymeDictionary.query(superWord, rhymeType, syllableCount,
+                pos);
+        System.out.println(String.format("%s for \"%s\" from %d known words (page %d, %d results):",
+                rhymeType.getLabel(), superWord.getPlaintext(), RhymeDictionary.size(), page, results.size()));
+        for (Pair<SuperWord, Integer> result : RhymeDictionary.getPage(results, page - 1, pageSize)) {
+            System.out.println(String.format("\t%s (%d syllable rhyme)", result.one().getPlaintext(), result.two()));
+        }
+    }
+
     public static void main(String[] args) {
         String usage = "java -cp lib/json-20210307.jar:src/ testing.Demos [ swc | swp | wc | rhyme ]"
                 + "\njava -cp lib/json-20210307.jar:src/ testing.Demos [ swc | swp | wc ] <word>"
@@ -130,7 +213,8 @@ public class Demos {
                 + "\njava -cp lib/json-20210307.jar:src/ testing.Demos [ synonyms | typeOf | has types | commonly typed | in category | has categories | commonly categorised | part of | has parts | similar to ] <word> <part of speech (PoS)>"
                 + "\njava -cp lib/json-20210307.jar:src/ testing.Demos rhyme <word1> <PoS1> <word2> <Pos2>"
                 + "\njava -cp lib/json-20210307.jar:src/ testing.Demos suggestions <word> <PoS1> <rhyme with> <Pos2>"
-                + "\njava -cp lib/json-20210307.jar:src/ testing.Demos poem <poem.txt>";
+                + "\njava -cp lib/json-20210307.jar:src/ testing.Demos [ poem | devices ] <poem.txt>"
+                + "\njava -cp lib/json-20210307.jar:src/ testing.Demos dictionary <word> [ perfect | syllabic | imperfect | weak | forced ] [<syllable count>] [<PoS>] [<page>]";
 
         if (args.length < 1) {
             /* for use within VS Code */
@@ -145,6 +229,24 @@ public class Demos {
             return;
         }
 
+        if (args[0].equalsIgnoreCase("dictionary") && args.length >= 2) {
+            RhymeType rhymeType = args.length > 2 ? rhymeTypeFromString(args[2]) : RhymeType.PERFECT_RHYME;
+            PartOfSpeech pos = args.length > 4 ? PartOfSpeech.fromString(args[4]) : null;
+            try {
+                int syllableCount = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+                int page = args.length > 5 ? Integer.parseInt(args[5]) : 1;
+                if (rhymeType == null || (args.length > 4 && pos == null) || page < 1) {
+                    System.err.println(usage);
+                } else {
+                    demoRhymingDictionary(args[1], rhymeType, syllableCount, pos, page);
+                }
+            } catch (NumberFormatException e) {
+                System.err.println(usage);
+            }
+            LOG.closeLogWriters();
+            return;
+        }
+
         if (args.length == 1) {
             switch (args[0].toLowerCase()) {
                 case "swc":
@@ -186,6 +288,9 @@ public class Demos {
                 case "poem":
                     demoPoemConstructor(args[1]);
                     break;
+                case "devices":
+                    demoDevices(args[1]);
+                    break;
                 case "syllables":
                     demoGetSyllables(args[1]);
                     break;
@@ -1,26 +1,59 @@
 package testing;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.LinkedList;
+import java.util.Map;
+import java.util.Random;
 
+import org.json.JSONObject;
 import org.junit.jupiter.api.Test;
 
 import exceptions.RhymeSchemeSizeException;
+import utils.BKTree;
+import utils.BoundedCache;
 import utils.Pair;
+import utils.RankedQueue;
+import utils.RoaringBitmap;
+import utils.ParameterWrappers.FilterParameters;
 import utils.ParameterWrappers.FilterParameters.RhymeType;
+import utils.ParameterWrappers.SuggestionPoolParameters;
+import utils.ParameterWrappers.SuggestionPoolParameters.SuggestionPool;
+import words.DeviceScanner;
 import words.Emphasis;
+import words.GraphemeToPhoneme;
 import words.IPAHandler;
+import words.PhonemeCode;
+import words.PartOfSpeech;
+import words.PhoneticFeatures;
+import words.Pronunciation;
+import words.Pronunciation.SubPronunciation;
+import words.RhymeDictionary;
+import words.RhymeMatcher;
 import words.RhymeScheme;
+import words.Stanza;
+import words.StressSignature;
+import words.SearchBudget;
+import words.SuggestionCache;
+import words.SuggestionFilter;
+import words.SuggestionSearch;
 import words.SuperWord;
 import words.Syllable;
+import words.SyllableEstimator;
 
 public class UnitTests {
 
@@ -78,6 +111,384 @@ public class UnitTests {
         }
     }
 
+    /*
+     * Generates a random IPA string with at least one vowel.
+     */
+    private static String generateIPA(Random random, String alphabet, String vowels, int maxLength) {
+        StringBuilder ipa = new StringBuilder();
+        int length = random.nextInt(maxLength);
+        for (int j = 0; j < length; j++) {
+            ipa.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        ipa.insert(random.nextInt(length + 1), vowels.charAt(random.nextInt(vowels.length())));
+        return ipa.toString();
+    }
+
+    /*
+     * Generates pronunciations from a small alphabet, so that plenty of pairs
+     * rhyme.
+     */
+    private static List<SubPronunciation> generateRhymingCorpus(int size) {
+        Random random = new Random(190021081);
+        List<SubPronunciation> corpus = new ArrayList<>();
+        while (corpus.size() < size) {
+            String ipa = generateIPA(random, "æɪəeɪtnsʃkr'',", "æɪə", 8);
+            Pair<ArrayList<Syllable>, Emphasis> parsed = IPAHandler.getSyllables(ipa);
+            corpus.add(new SubPronunciation(ipa, parsed.one(), parsed.two()));
+        }
+        return corpus;
+    }
+
+    /**
+     * Tests that the table-driven syllabifier agrees with the original scanning
+     * implementation, over the words above and a large generated corpus.
+     */
+    @Test
+    public void testSyllabifierMatchesScanning() {
+        List<String> corpus = new ArrayList<>(Arrays.asList("ɪɡ'zæmpəl", "'mæstəri", "'tɛstɪŋ",
+                "mɪ'steɪk", "skaɪ", "kjʊr", "kəm_ə'lɔŋ", "'sɪŋə", "'æbərˌkrɑmbi", "ˌsplɛn'dɪfərəs", "ju,stju'ʊə"));
+        // weighted towards the characters WordsAPI uses
+        Random random = new Random(190021081);
+        for (int i = 0; i < 10000; i++) {
+            corpus.add(generateIPA(random, "ɪeɪaʊoʊəæɛʊuiɔɑʌpbtdkɡmnŋfvθðszʃʒhlrɹwjspltkr'',,_ː", "ɪeaoəæɛʊuiɔɑʌ", 12));
+        }
+
+        for (String ipa : corpus) {
+            Pair<ArrayList<Syllable>, Emphasis> expected = IPAHandler.getSyllablesByScanning(ipa);
+            Pair<ArrayList<Syllable>, Emphasis> actual = IPAHandler.getSyllables(ipa);
+            assertEquals(expected.two(), actual.two(), ipa);
+            assertEquals(expected.one().size(), actual.one().size(), ipa);
+            for (int j = 0; j < expected.one().size(); j++) {
+                assertEquals(expected.one().get(j), actual.one().get(j), ipa);
+            }
+        }
+    }
+
+    /**
+     * Tests that comparing phoneme-coded pronunciations gives the same answer as
+     * comparing lists of syllables, for every pair of a generated corpus and
+     * every type of rhyme.
+     */
+    @Test
+    public void testCompactMatchesSyllableLists() {
+        List<SubPronunciation> corpus = generateRhymingCorpus(200);
+
+        int rhymes = 0;
+        for (SubPronunciation sub1 : corpus) {
+            for (SubPronunciation sub2 : corpus) {
+                for (RhymeType rhymeType : RhymeType.values()) {
+                    boolean expected = sub1.matchesWithSyllableLists(rhymeType, sub2);
+                    assertEquals(expected, sub1.matchesWith(rhymeType, sub2), sub1 + " " + rhymeType + " " + sub2);
+                    rhymes += expected ? 1 : 0;
+                }
+            }
+        }
+        assertTrue(rhymes > corpus.size());
+    }
+
+    /**
+     * Tests that matching one word against many in a batch agrees with matching
+     * each pair.
+     */
+    @Test
+    public void testRhymeMatcherMatchesPairwise() {
+        List<SuperWord> words = new ArrayList<>();
+        for (String plaintext : new String[] { "cat", "hat", "flat", "cable", "fable", "label", "day", "away",
+                "display", "nation", "station", "relation", "mountain", "fountain", "butter", "better", "letter",
+                "flower", "power", "tower" }) {
+            words.add(SuperWord.getSuperWord(plaintext));
+        }
+        SuperWord.populateAll(words);
+
+        int rhymes = 0;
+        for (RhymeType rhymeType : RhymeType.values()) {
+            for (SuperWord target : words) {
+                BitSet matches = RhymeMatcher.prepare(rhymeType, target, null).matchAll(words, null);
+                for (int i = 0; i < words.size(); i++) {
+                    boolean expected = target.matchesWithWrapper(rhymeType, words.get(i));
+                    assertEquals(expected, matches.get(i), target + " " + rhymeType + " " + words.get(i));
+                    rhymes += expected ? 1 : 0;
+                }
+            }
+        }
+        assertTrue(rhymes > words.size());
+    }
+
+    /*
+     * Whether a query pronunciation rhymes with a word, within the limits, for any
+     * pair of their pronunciations.
+     */
+    private static boolean rhymesPairwise(Pronunciation query, Pronunciation candidate, RhymeType rhymeType,
+            int syllableCount, PartOfSpeech pos) {
+        for (Map.Entry<SubPronunciation, EnumSet<PartOfSpeech>> entry : candidate.getDistinctSubPronunciations()
+                .entrySet()) {
+            if ((pos != null && !entry.getValue().contains(pos)) || (syllableCount > 0
+                    && candidate.getSyllableCount(entry.getValue().iterator().next()) != syllableCount)) {
+                continue;
+            }
+            for (SubPronunciation sub : query.getDistinctSubPronunciations().keySet()) {
+                if (sub.matchesWith(rhymeType, entry.getKey())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tests that the rhyming dictionary finds the same words as matching each
+     * pair, over a generated corpus, for every type of rhyme and with limits on
+     * syllable count and part of speech; and that its results page as expected.
+     */
+    @Test
+    public void testRhymeDictionaryMatchesPairwise() {
+        List<SubPronunciation> corpus = generateRhymingCorpus(200);
+        HashMap<SuperWord, Pronunciation> words = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            // every other word is pronounced differently as a verb
+            JSONObject ipa = new JSONObject().put("all", corpus.get(i).getIPA());
+            if (i % 2 == 0) {
+                ipa.put(PartOfSpeech.VERB.getApiString(), corpus.get(100 + i).getIPA());
+            }
+            Pronunciation pronunciation = new Pronunciation();
+            assertTrue(pronunciation.setIPA("rhymedictionary" + i, ipa));
+            SuperWord word = SuperWord.getSuperWord("rhymedictionary" + i);
+            words.put(word, pronunciation);
+            RhymeDictionary.add(word, pronunciation);
+        }
+
+        int rhymes = 0;
+        for (Map.Entry<SuperWord, Pronunciation> query : words.entrySet()) {
+            for (RhymeType rhymeType : RhymeType.values()) {
+                for (Pair<Integer, PartOfSpeech> limits : List.of(new Pair<Integer, PartOfSpeech>(0, null),
+                        new Pair<Integer, PartOfSpeech>(2, null), new Pair<>(0, PartOfSpeech.VERB),
+                        new Pair<>(1, PartOfSpeech.NOUN))) {
+                    ArrayList<Pair<SuperWord, Integer>> results = RhymeDictionary.query(query.getValue(),
+                            query.getKey(), rhymeType, limits.one(), limits.two());
+                    for (int i = 1; i < results.size(); i++) {
+                        Pair<SuperWord, Integer> previous = results.get(i - 1);
+                        assertTrue(previous.two() > results.get(i).two() || (previous.two().equals(results.get(i).two())
+                                && previous.one().getPlaintext().compareTo(results.get(i).one().getPlaintext()) < 0));
+                    }
+
+                    // other tests add real words to the dictionary too
+                    HashSet<SuperWord> found = new HashSet<>();
+                    for (Pair<SuperWord, Integer> result : results) {
+                        if (words.containsKey(result.one())) {
+                            found.add(result.one());
+                        }
+                    }
+                    for (Map.Entry<SuperWord, Pronunciation> candidate : words.entrySet()) {
+                        boolean expected = candidate.getKey() != query.getKey() && rhymesPairwise(query.getValue(),
+                                candidate.getValue(), rhymeType, limits.one(), limits.two());
+                        assertEquals(expected, found.contains(candidate.getKey()),
+                                query.getKey() + " " + rhymeType + " " + limits.one() + " " + limits.two() + " "
+                                        + candidate.getKey());
+                        rhymes += expected ? 1 : 0;
+                    }
+                }
+            }
+        }
+        assertTrue(rhymes > words.size());
+
+        List<Integer> results = new ArrayList<>();
+        for (int i = 0; i < 23; i++) {
+            results.add(i);
+        }
+        assertEquals(results.subList(0, 10), RhymeDictionary.getPage(results, 0, 10));
+        assertEquals(results.subList(20, 23), RhymeDictionary.getPage(results, 2, 10));
+        assertTrue(RhymeDictionary.getPage(results, 3, 10).isEmpty());
+        assertTrue(RhymeDictionary.getPage(new ArrayList<Integer>(), 0, 10).isEmpty());
+    }
+
+    /**
+     * Tests that sharing a rhyme key (primary for at least one of the pair) is the
+     * same as perfectly rhyming, which the rhyme index relies on.
+     */
+    @Test
+    public void testRhymeKeysMatchPerfectRhyme() {
+        List<SubPronunciation> corpus = generateRhymingCorpus(200);
+        for (SubPronunciation sub1 : corpus) {
+            for (SubPronunciation sub2 : corpus) {
+                boolean sharesKey = sub1.getPrimaryRhymeKey().equals(sub2.getPrimaryRhymeKey())
+                        || sub2.getSecondaryRhymeKeys().contains(sub1.getPrimaryRhymeKey())
+                        || sub1.getSecondaryRhymeKeys().contains(sub2.getPrimaryRhymeKey());
+                assertEquals(sub1.matchesWithSyllableLists(RhymeType.PERFECT_RHYME, sub2), sharesKey,
+                        sub1 + " " + sub2);
+            }
+        }
+    }
+
+    /**
+     * Tests forced rhyme on some known near rhymes, and that rhyme distance is a
+     * metric (which the forced rhyme index relies on) over a generated corpus.
+     */
+    @Test
+    public void testForcedRhyme() {
+        assertTrue(forcedRhyme("taɪm", "ʃaɪn"));
+        assertTrue(forcedRhyme("'bɑtəl", "'mɑdəl"));
+        assertTrue(forcedRhyme("kæts", "kæt"));
+        assertTrue(forcedRhyme("kæt", "kæp"));
+        assertFalse(forcedRhyme("taɪm", "'laɪm")); // perfect
+        assertFalse(forcedRhyme("taɪm", "tɔk"));
+
+        Random random = new Random(190021081);
+        List<int[]> rhymes = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            String ipa = generateIPA(random, "æɪəeaʊtdnmsʃkɡrlvɥ", "æɪəeaʊ", 6);
+            int[] codes = new int[PhonemeCode.countPhonemes(ipa)];
+            PhonemeCode.encode(ipa, codes, 0);
+            rhymes.add(codes);
+        }
+        for (int[] x : rhymes) {
+            for (int[] y : rhymes) {
+                int xy = PhoneticFeatures.rhymeDistance(x, y);
+                assertEquals(xy, PhoneticFeatures.rhymeDistance(y, x));
+                assertEquals(Arrays.equals(x, y), xy == 0);
+                assertEquals(Math.min(xy, 4), PhoneticFeatures.rhymeDistance(x, y, 3));
+                for (int[] z : rhymes) {
+                    assertTrue(PhoneticFeatures.rhymeDistance(x, z) <= xy + PhoneticFeatures.rhymeDistance(y, z));
+                }
+            }
+        }
+    }
+
+    private static boolean forcedRhyme(String ipa1, String ipa2) {
+        Pair<ArrayList<Syllable>, Emphasis> parsed1 = IPAHandler.getSyllables(ipa1);
+        Pair<ArrayList<Syllable>, Emphasis> parsed2 = IPAHandler.getSyllables(ipa2);
+        return new SubPronunciation(ipa1, parsed1.one(), parsed1.two()).matchesWith(RhymeType.FORCED_RHYME,
+                new SubPronunciation(ipa2, parsed2.one(), parsed2.two()));
+    }
+
+    /**
+     * Tests stress patterns of words and the meter check.
+     */
+    @Test
+    public void testStressSignature() {
+        StressSignature mastery = stressSignature("'mæstəri");
+        StressSignature example = stressSignature("ɪɡ'zæmpəl");
+        StressSignature sky = stressSignature("skaɪ");
+        assertEquals("/xx", mastery.toString());
+        assertEquals("x/x", example.toString());
+        assertEquals("?", sky.toString());
+
+        assertTrue(example.admits(stressSignature("dɪ'zaɪnər")));
+        assertFalse(example.admits(mastery));
+        assertFalse(example.admits(stressSignature("'mæstər")));
+        assertTrue(sky.admits(stressSignature("'taɪm")));
+    }
+
+    private static StressSignature stressSignature(String ipa) {
+        Pair<ArrayList<Syllable>, Emphasis> parsed = IPAHandler.getSyllables(ipa);
+        return StressSignature.of(new SubPronunciation(ipa, parsed.one(), parsed.two()));
+    }
+
+    /**
+     * Tests that pronunciations estimated from spelling can be parsed, with the
+     * expected syllables and stress.
+     */
+    @Test
+    public void testGraphemeToPhoneme() {
+        assertEquals("'bɑtəl", GraphemeToPhoneme.toIPA("bottle"));
+        assertEquals("'meɪk", GraphemeToPhoneme.toIPA("make"));
+        assertEquals("'aɪs_'krim", GraphemeToPhoneme.toIPA("Ice cream"));
+        assertEquals("", GraphemeToPhoneme.toIPA("42"));
+        assertNull(GraphemeToPhoneme.estimate("zzz"));
+
+        String[] words = { "cat", "happy", "beautiful", "poetic", "ability", "engineer" };
+        int[] syllables = { 1, 2, 3, 3, 4, 3 };
+        int[] primary = { 0, 0, 1, 1, 1, 2 };
+        for (int i = 0; i < words.length; i++) {
+            Pair<ArrayList<Syllable>, Emphasis> parsed = GraphemeToPhoneme.estimateSyllables(words[i]);
+            assertEquals(syllables[i], parsed.one().size(), words[i]);
+            assertEquals(primary[i], parsed.two().getPrimary(), words[i]);
+        }
+    }
+
+    /**
+     * Tests syllable counts estimated from spelling, and that the syllable check
+     * passes borderline words.
+     */
+    @Test
+    public void testSyllableEstimator() {
+        String[] words = { "cat", "make", "makes", "horses", "played", "wanted", "table", "happy", "yes", "piano",
+                "nation", "beautiful", "ice cream", "well-known", "" };
+        int[] syllables = { 1, 1, 1, 2, 1, 2, 2, 2, 1, 3, 2, 3, 2, 2, 0 };
+        for (int i = 0; i < words.length; i++) {
+            assertEquals(syllables[i], SyllableEstimator.estimate(words[i]), words[i]);
+        }
+
+        List<SuperWord> candidates = Arrays.asList(SuperWord.getSuperWord("cat"),
+                SuperWord.getSuperWord("table"), SuperWord.getSuperWord("beautiful"));
+        int[] tolerances = { 0, 1, -1 };
+        int[] passing = { 1, 2, 3 };
+        for (int i = 0; i < tolerances.length; i++) {
+            for (int j = 0; j < candidates.size(); j++) {
+                assertEquals(j < passing[i], SyllableEstimator.mayHaveSyllables(candidates.get(j), 1, tolerances[i]),
+                        candidates.get(j) + " " + tolerances[i]);
+            }
+        }
+    }
+
+    /**
+     * Tests that filter stages run cheapest per rejection first, that each
+     * suggestion stops at the first stage it fails, and that order is kept.
+     */
+    @Test
+    public void testSuggestionFilterOrder() {
+        SuggestionFilter filter = new SuggestionFilter();
+        SuggestionFilter.Stage even = new SuggestionFilter.Stage("even length", 10, 0.5, false) {
+            protected boolean test(SuperWord suggestion) {
+                return suggestion.getPlaintext().length() % 2 == 0;
+            }
+        };
+        SuggestionFilter.Stage startsWithA = new SuggestionFilter.Stage("starts with a", 1, 0.5, false) {
+            protected boolean test(SuperWord suggestion) {
+                return suggestion.getPlaintext().startsWith("a");
+            }
+        };
+        filter.add(even).add(startsWithA);
+        assertEquals(Arrays.asList(startsWithA, even), filter.getOrder());
+
+        List<SuperWord> suggestions = new ArrayList<>();
+        for (String plaintext : Arrays.asList("able", "bold", "axe", "also", "crow", "apex")) {
+            suggestions.add(SuperWord.getSuperWord(plaintext));
+        }
+        assertEquals(Arrays.asList(suggestions.get(0), suggestions.get(3), suggestions.get(5)),
+                filter.filter(suggestions));
+        assertEquals("[starts with a (rejected 2 of 6), even length (rejected 1 of 4)]", filter.getReport());
+    }
+
+    /**
+     * Tests that a search budget runs out on requests or time, and that
+     * suggestions which cannot be looked up within it are set aside rather than
+     * rejected.
+     */
+    @Test
+    public void testSearchBudget() {
+        SearchBudget budget = new SearchBudget(60_000, 2);
+        assertTrue(budget.tryCharge());
+        assertTrue(budget.tryCharge());
+        assertFalse(budget.tryCharge());
+        assertTrue(budget.isSpent());
+        assertEquals(2, budget.getRequestsUsed());
+        assertTrue(new SearchBudget(0, 10).isSpent());
+        assertFalse(SearchBudget.unlimited().isSpent());
+
+        SuggestionFilter filter = new SuggestionFilter();
+        filter.add(new SuggestionFilter.Stage("looked up", 1, 0.5, true) {
+            protected boolean test(SuperWord suggestion) {
+                return true;
+            }
+        });
+        List<SuperWord> suggestions = Arrays.asList(SuperWord.getSuperWord("unbudgetedone"),
+                SuperWord.getSuperWord("unbudgetedtwo"));
+        List<SuperWord> unchecked = new ArrayList<>();
+        assertTrue(filter.filter(suggestions, new SearchBudget(60_000, 0), unchecked).isEmpty());
+        assertEquals(suggestions, unchecked);
+        assertFalse(suggestions.get(0).isPopulated());
+    }
+
     @Test
     public void testDuplicateSorting() {
         ArrayList<String> list1 = new ArrayList<>(Arrays.asList("a", "b", "m"));
@@ -91,6 +502,246 @@ public class UnitTests {
         assertEquals(Arrays.asList("m", "n", "a", "b", "c", "x", "y", "z"), combined);
     }
 
+    /**
+     * Tests that the ranked queue gives the same order as combining the lists
+     * eagerly, a few at a time.
+     */
+    @Test
+    public void testRankedQueue() {
+        ArrayList<String> list1 = new ArrayList<>(Arrays.asList("a", "b", "m"));
+        ArrayList<String> list2 = new ArrayList<>(Arrays.asList("c", "n", "m"));
+        ArrayList<String> list3 = new ArrayList<>(Arrays.asList("n", "x", "m"));
+        ArrayList<String> list4 = new ArrayList<>(Arrays.asList("y", "z", "m"));
+        ArrayList<String> list5 = null;
+        RankedQueue<String> ranked = new RankedQueue<>(Arrays.asList(list1, list2, list3, list4, list5));
+        ranked.remove("b");
+        assertEquals(Arrays.asList("m", "n", "a"), ranked.poll(3));
+        assertEquals(Arrays.asList("c", "x", "y", "z"), ranked.poll(10));
+        assertTrue(ranked.isEmpty());
+    }
+
+    /**
+     * Tests that a suggestion search stops at its limit, carries suggestions that
+     * passed beyond it over to the next call, and resumes from the next
+     * unchecked candidate.
+     */
+    @Test
+    public void testSuggestionSearch() {
+        // a first batch of rhymes and non-rhymes, then two more rhymes
+        List<SuperWord> candidates = new ArrayList<>();
+        for (String plaintext : new String[] { "hat", "dog", "mat", "log", "sat", "fog", "flat", "frog", "rat", "bog",
+                "bat", "jog", "pat", "cog", "vat", "hog", "gnat", "spat" }) {
+            candidates.add(SuperWord.getSuperWord(plaintext));
+        }
+        assertEquals(SuggestionSearch.BATCH_SIZE, candidates.size() - 2);
+        FilterParameters filters = new FilterParameters();
+        filters.setRhymeFilter(RhymeType.PERFECT_RHYME, SuperWord.getSuperWord("cat"));
+        SuggestionSearch search = new SuggestionSearch(SuperWord.getSuperWord("kitten"), PartOfSpeech.NOUN, filters,
+                new RankedQueue<>(List.of(candidates)));
+
+        assertEquals(Arrays.asList("hat", "mat", "sat"),
+                search.next(3).stream().map(SuperWord::getPlaintext).toList());
+        assertEquals(SuggestionSearch.BATCH_SIZE, search.getChecked());
+        assertTrue(search.hasMore());
+        assertFalse(search.isPartial());
+
+        // the rest of the first batch's rhymes, without checking more candidates
+        List<SuperWord> surplus = search.next(4);
+        assertEquals(Arrays.asList("flat", "rat", "bat", "pat"),
+                surplus.stream().map(SuperWord::getPlaintext).toList());
+        assertEquals(SuggestionSearch.BATCH_SIZE, search.getChecked());
+
+        List<SuperWord> rest = search.next(10);
+        assertEquals(Arrays.asList("vat", "gnat", "spat"), rest.stream().map(SuperWord::getPlaintext).toList());
+        assertEquals(candidates.size(), search.getChecked());
+        assertFalse(search.hasMore());
+        assertEquals(10, search.getReturned().size());
+        assertEquals(surplus, search.getReturned().subList(3, 7));
+        assertTrue(search.next(1).isEmpty());
+    }
+
+    /**
+     * Tests the compressed bitmap against a BitSet, over sparse and dense chunks
+     * so that both kinds of container, and conversions between them, are used.
+     */
+    @Test
+    public void testRoaringBitmap() {
+        Random random = new Random(190021081);
+        BitSet[] expected = { new BitSet(), new BitSet() };
+        RoaringBitmap[] bitmaps = { new RoaringBitmap(), new RoaringBitmap() };
+        for (int i = 0; i < 2; i++) {
+            for (int n = 0; n < 20_000; n++) {
+                // chunk 0 dense, chunk 1 sparse, chunk 3 dense in one bitmap only
+                int value = n % 3 == 0 ? random.nextInt(1 << 16) : n % 3 == 1 ? (1 << 16) + random.nextInt(1 << 16)
+                        : i == 0 ? (3 << 16) + random.nextInt(6000) : (4 << 16) + random.nextInt(100);
+                expected[i].set(value);
+                bitmaps[i].add(value);
+            }
+            for (int n = 0; n < 5_000; n++) {
+                int value = random.nextInt(5 << 16);
+                expected[i].clear(value);
+                bitmaps[i].remove(value);
+            }
+            assertEquals(expected[i].cardinality(), bitmaps[i].cardinality());
+            assertArrayEquals(expected[i].stream().toArray(), bitmaps[i].toArray());
+        }
+
+        BitSet and = (BitSet) expected[0].clone();
+        and.and(expected[1]);
+        BitSet or = (BitSet) expected[0].clone();
+        or.or(expected[1]);
+        BitSet andNot = (BitSet) expected[0].clone();
+        andNot.andNot(expected[1]);
+        assertArrayEquals(and.stream().toArray(), bitmaps[0].and(bitmaps[1]).toArray());
+        assertArrayEquals(or.stream().toArray(), bitmaps[0].or(bitmaps[1]).toArray());
+        assertArrayEquals(andNot.stream().toArray(), bitmaps[0].andNot(bitmaps[1]).toArray());
+        assertTrue(bitmaps[0].andNot(bitmaps[0]).isEmpty());
+        assertTrue(bitmaps[0].contains(expected[0].nextSetBit(0)));
+        assertFalse(bitmaps[0].contains(expected[0].nextClearBit(0)));
+
+        // results are independent of their operands
+        RoaringBitmap copy = bitmaps[0].or(new RoaringBitmap());
+        copy.add(7 << 16);
+        assertFalse(bitmaps[0].contains(7 << 16));
+        assertEquals("[1, 5, 65536]", RoaringBitmap.of(65536, 5, 1, 5).toString());
+    }
+
+    @Test
+    public void testBKTreeSearch() {
+        List<String> words = Arrays.asList("award", "adware", "wad", "sward", "toward", "awkward", "aboard",
+                "adage", "ward", "salad", "dad", "adwad");
+        BKTree<String> tree = new BKTree<>(BKTree::editDistance);
+        for (String word : words) {
+            tree.add(word);
+        }
+        assertFalse(tree.add("award"));
+        assertEquals(words.size(), tree.size());
+        assertEquals(2, BKTree.editDistance("adwad", "award"));
+
+        // the tree should find exactly what a linear scan finds
+        List<String> expected = new ArrayList<>();
+        for (String word : words) {
+            if (BKTree.editDistance("adwrd", word) <= 2) {
+                expected.add(word);
+            }
+        }
+        List<String> found = new ArrayList<>();
+        int lastDistance = 0;
+        for (Pair<String, Integer> match : tree.search("adwrd", 2)) {
+            assertTrue(match.two() >= lastDistance);
+            lastDistance = match.two();
+            found.add(match.one());
+        }
+        expected.sort(null);
+        found.sort(null);
+        assertEquals(expected, found);
+    }
+
+    @Test
+    public void testBoundedCache() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(2);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        assertEquals(1, cache.get("a")); // "b" is now least recently used
+        cache.put("c", 3);
+        assertEquals(2, cache.size());
+        assertEquals(null, cache.get("b"));
+        assertEquals(3, cache.computeIfAbsent("c", key -> 4));
+        assertEquals(5, cache.computeIfAbsent("d", key -> 5));
+        assertEquals(null, cache.get("a"));
+        assertEquals(2, cache.getHits());
+        assertEquals(3, cache.getMisses());
+    }
+
+    /**
+     * Tests that suggestion searches are keyed by the values of their parameters,
+     * and depend on the words they rhyme with.
+     */
+    @Test
+    public void testSuggestionCacheKey() {
+        SuperWord word = SuperWord.getSuperWord("cat");
+        SuperWord rhyme = SuperWord.getSuperWord("hat");
+        SuggestionPoolParameters pools = new SuggestionPoolParameters();
+        pools.togglePool(SuggestionPool.SYNONYMS, true);
+        FilterParameters filters = new FilterParameters();
+        filters.setRhymeFilter(RhymeType.PERFECT_RHYME, rhyme);
+        FilterParameters sameFilters = new FilterParameters();
+        sameFilters.setRhymeFilter(RhymeType.PERFECT_RHYME, SuperWord.getSuperWord("hat"));
+
+        SuggestionCache.Key key = SuggestionCache.key(word, PartOfSpeech.NOUN, pools, filters);
+        SuggestionCache.Key sameKey = SuggestionCache.key(word, PartOfSpeech.NOUN, pools, sameFilters);
+        assertEquals(key, sameKey);
+        assertEquals(key.hashCode(), sameKey.hashCode());
+        assertTrue(key.dependsOn(rhyme));
+        assertFalse(key.dependsOn(word));
+
+        sameFilters.setSyllableCountFilter(true);
+        assertNotEquals(key, SuggestionCache.key(word, PartOfSpeech.NOUN, pools, sameFilters));
+        assertNotEquals(key, SuggestionCache.key(word, PartOfSpeech.VERB, pools, filters));
+        pools.togglePool(SuggestionPool.SIMILAR_TO, true);
+        assertNotEquals(key, SuggestionCache.key(word, PartOfSpeech.NOUN, pools, filters));
+    }
+
+    /**
+     * Tests that internal rhymes are grouped by rhyme key, that unpopulated words
+     * are keyed by their estimated pronunciation rather than looked up, and that
+     * rhymes only between line endings are left to the rhyme scheme.
+     */
+    @Test
+    public void testInternalRhymes() {
+        SuperWord.populateAll(Arrays.asList(SuperWord.getSuperWord("fat"), SuperWord.getSuperWord("cat"),
+                SuperWord.getSuperWord("nice"), SuperWord.getSuperWord("mice")));
+        Stanza stanza = new Stanza(0);
+        stanza.addLine("fat cat drove");
+        stanza.addLine("nice mice");
+        stanza.addLine("hen pen");
+        stanza.addLine("grove");
+        stanza.evaluateRhymingScheme();
+
+        List<Stanza.RhymeGroup> groups = stanza.getInternalRhymes();
+        assertEquals(3, groups.size());
+        assertEquals("{fat (line 1), cat (line 1)}", groups.get(0).toString());
+        assertEquals("{nice (line 2), mice (line 2)}", groups.get(1).toString());
+        assertEquals("{hen (line 3), pen (line 3)}", groups.get(2).toString());
+        assertFalse(SuperWord.getSuperWord("hen").isPopulated());
+        assertTrue(groups.get(0).isPrimary(0) && groups.get(0).isPrimary(1));
+        assertArrayEquals(new int[] { 1, 2 }, groups.get(1).getPositions().get(1));
+    }
+
+    /**
+     * Tests that the device scanner finds clusters within lines (of at least two
+     * words) and across lines (of at least three words, on more than one line),
+     * skipping schwa, and estimating words that are not populated.
+     */
+    @Test
+    public void testDeviceScanner() {
+        SuperWord.populateAll(Arrays.asList(SuperWord.getSuperWord("big"), SuperWord.getSuperWord("bold"),
+                SuperWord.getSuperWord("bat"), SuperWord.getSuperWord("a"), SuperWord.getSuperWord("cat"),
+                SuperWord.getSuperWord("sat"), SuperWord.getSuperWord("mad"), SuperWord.getSuperWord("dog")));
+        Stanza stanza = new Stanza(0);
+        stanza.addLine("big bold bat");
+        stanza.addLine("a cat sat a bet");
+        stanza.addLine("mad dog");
+        List<DeviceScanner.Cluster> clusters = DeviceScanner.scan(stanza, 0);
+
+        // scanned by its estimated pronunciation, without being looked up
+        assertFalse(SuperWord.getSuperWord("bet").isPopulated());
+        List<String> found = new ArrayList<>();
+        for (DeviceScanner.Cluster cluster : clusters) {
+            found.add(cluster.toString());
+        }
+        assertEquals(Arrays.asList("alliteration /b/ in line 1: big, bold, bat", "assonance /æ/ in line 2: cat, sat",
+                "consonance /t/ in line 2: cat, sat, bet",
+                "alliteration /b/ across lines: big (1), bold (1), bat (1), bet (2)",
+                "assonance /æ/ across lines: bat (1), cat (2), sat (2), mad (3)",
+                "consonance /t/ across lines: bat (1), cat (2), sat (2), bet (2)"), found);
+        assertTrue(clusters.get(1).isWithinLine() && !clusters.get(4).isWithinLine());
+        DeviceScanner.Occurrence sat = clusters.get(4).getOccurrences().get(2);
+        assertEquals(1, sat.getLineIndex());
+        assertEquals(SuperWord.getSuperWord("sat"), stanza.getLines().get(1).get(sat.getTokenIndex()));
+        assertEquals("alliteration 2, assonance 2, consonance 2", DeviceScanner.summarise(clusters));
+    }
+
     @Test
     public void testRhymingSchemeException() {
         assertThrows(RhymeSchemeSizeException.class, () -> {
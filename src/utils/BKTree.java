@@ -0,0 +1,158 @@
+package utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * This class is a BK-tree, i.e. a metric index that finds every element within
+ * a given distance of a query without comparing against the whole collection.
+ * The metric must satisfy the triangle inequality (e.g. edit distance).
+ *
+ * @author 190021081
+ */
+public class BKTree<T> {
+
+    private static class Node<T> {
+        private final T element;
+        private HashMap<Integer, Node<T>> children;
+
+        private Node(T element) {
+            this.element = element;
+        }
+    }
+
+    private final ToIntBiFunction<T, T> metric;
+    private Node<T> root;
+    private int size = 0;
+
+    public BKTree(ToIntBiFunction<T, T> metric) {
+        this.metric = metric;
+    }
+
+    /**
+     * Adds an element to the tree.
+     *
+     * @param element the element to add.
+     * @return false if an element at distance 0 was already present.
+     */
+    public synchronized boolean add(T element) {
+        if (root == null) {
+            root = new Node<>(element);
+            size++;
+            return true;
+        }
+
+        Node<T> node = root;
+        while (true) {
+            int distance = metric.applyAsInt(element, node.element);
+            if (distance == 0) {
+                return false;
+            }
+            if (node.children == null) {
+                node.children = new HashMap<>();
+            }
+            Node<T> child = node.children.get(distance);
+            if (child == null) {
+                node.children.put(distance, new Node<>(element));
+                size++;
+                return true;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * @param element the element to look for.
+     * @return true if an element at distance 0 is present.
+     */
+    public synchronized boolean contains(T element) {
+        Node<T> node = root;
+        while (node != null) {
+            int distance = metric.applyAsInt(element, node.element);
+            if (distance == 0) {
+                return true;
+            }
+            node = node.children == null ? null : node.children.get(distance);
+        }
+        return false;
+    }
+
+    /**
+     * Finds every element within a given distance of the query.
+     *
+     * @param query       the element to search around.
+     * @param maxDistance the greatest distance (inclusive) to return.
+     * @return pairs of (element, distance), in ascending order of distance.
+     */
+    public synchronized ArrayList<Pair<T, Integer>> search(T query, int maxDistance) {
+        ArrayList<Pair<T, Integer>> results = new ArrayList<>();
+        if (root == null) {
+            return results;
+        }
+
+        Deque<Node<T>> toVisit = new ArrayDeque<>();
+        toVisit.push(root);
+        while (!toVisit.isEmpty()) {
+            Node<T> node = toVisit.pop();
+            int distance = metric.applyAsInt(query, node.element);
+            if (distance <= maxDistance) {
+                results.add(new Pair<>(node.element, distance));
+            }
+            if (node.children != null) {
+                /* triangle inequality: only children in this band can be close enough */
+                for (int d = Math.max(1, distance - maxDistance); d <= distance + maxDistance; d++) {
+                    Node<T> child = node.children.get(d);
+                    if (child != null) {
+                        toVisit.push(child);
+                    }
+                }
+            }
+        }
+
+        results.sort((p1, p2) -> p1.two() - p2.two());
+        return results;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Levenshtein distance, i.e. the number of single character insertions,
+     * deletions or substitutions needed to turn one string into the other.
+     *
+     * @param s1 a string.
+     * @param s2 another string.
+     * @return the edit distance between the two strings.
+     */
+    public static int editDistance(String s1, String s2) {
+        if (s1.length() < s2.length()) {
+            String temp = s1;
+            s1 = s2;
+            s2 = temp;
+        }
+
+        int[] previous = new int[s2.length() + 1];
+        int[] current = new int[s2.length() + 1];
+        for (int j = 0; j <= s2.length(); j++) {
+            previous[j] = j;
+        }
+
+        for (int i = 1; i <= s1.length(); i++) {
+            current[0] = i;
+            char c1 = s1.charAt(i - 1);
+            for (int j = 1; j <= s2.length(); j++) {
+                int substitution = previous[j - 1] + (c1 == s2.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] temp = previous;
+            previous = current;
+            current = temp;
+        }
+        return previous[s2.length()];
+    }
+
+}
@@ -0,0 +1,133 @@
+package utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * This class is a size-bounded cache that evicts the least recently used entry
+ * once full. It is safe to share between threads, and counts hits and misses
+ * so that its usefulness can be reported.
+ *
+ * @author 190021081
+ */
+public class BoundedCache<K, V> {
+
+    private final LinkedHashMap<K, V> map;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param capacity the most entries to keep.
+     */
+    public BoundedCache(int capacity) {
+        this.map = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Counts as a hit or miss.
+     *
+     * @param key the key to look up.
+     * @return the cached value, or null if there was none.
+     */
+    public V get(K key) {
+        V value;
+        synchronized (map) {
+            value = map.get(key);
+        }
+        (value == null ? misses : hits).incrementAndGet();
+        return value;
+    }
+
+    public void put(K key, V value) {
+        synchronized (map) {
+            map.put(key, value);
+        }
+    }
+
+    /**
+     * Gets the cached value, computing and caching it on a miss. The value is
+     * computed without holding the cache's lock, so two threads missing on the
+     * same key at once may both compute it; the first to finish is kept.
+     *
+     * @param key     the key to look up.
+     * @param compute computes the value on a miss; a null result is not cached.
+     * @return the cached or computed value.
+     */
+    public V computeIfAbsent(K key, Function<K, V> compute) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        value = compute.apply(key);
+        if (value == null) {
+            return null;
+        }
+        synchronized (map) {
+            V existing = map.putIfAbsent(key, value);
+            return existing == null ? value : existing;
+        }
+    }
+
+    public void remove(K key) {
+        synchronized (map) {
+            map.remove(key);
+        }
+    }
+
+    /**
+     * Removes every entry whose key meets a condition.
+     *
+     * @param condition the condition.
+     */
+    public void removeIf(Predicate<K> condition) {
+        synchronized (map) {
+            map.keySet().removeIf(condition);
+        }
+    }
+
+    public void clear() {
+        synchronized (map) {
+            map.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (map) {
+            return map.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the proportion of lookups that were hits, or 0 if there have been
+     *         none.
+     */
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String toString() {
+        return String.format("{size: %d, hits: %d, misses: %d, hit rate: %.2f}", size(), hits.get(), misses.get(),
+                getHitRate());
+    }
+
+}
@@ -4,7 +4,9 @@ import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.List;
 
+import config.Configuration;
 import words.PartOfSpeech;
+import words.StressSignature;
 import words.SuperWord;
 
 /**
@@ -133,7 +135,7 @@ public interface ParameterWrappers {
             IMPERFECT_RHYME("imperfect rhyme",
                     "Exact match from a stressed syllable to an unstressed syllable, or between two secondary stressed syllables, e.g. zombie/bee."),
             WEAK_RHYME("weak rhyme", "Exact match between unstressed syllables, e.g. dependent/sediment."),
-            FORCED_RHYME("forced rhyme", "Inexact match from stressed syllables. Not yet implemented.");
+            FORCED_RHYME("forced rhyme", "Near match from stressed syllables, differing by a few similar sounds, e.g. time/shine.");
 
             private final String label;
             private final String explanation;
@@ -156,6 +158,9 @@ public interface ParameterWrappers {
         private EnumMap<RhymeType, List<SuperWord>> rhymeFilters = new EnumMap<>(RhymeType.class);
         private PartOfSpeech matchWithPoS = null; // if null, match all PoS
         private boolean syllableCountFilter = false;
+        // negative to look up every suggestion's exact syllable count
+        private int syllableTolerance = Configuration.SYLLABLE_ESTIMATE_TOLERANCE;
+        private StressSignature meter = null; // if null, do not filter by stress pattern
 
         public void setRhymeFilter(RhymeType rhymeType, SuperWord matchWith) {
             rhymeFilters.computeIfAbsent(rhymeType, k -> new ArrayList<SuperWord>()).add(matchWith);
@@ -169,6 +174,24 @@ public interface ParameterWrappers {
             this.syllableCountFilter = syllableCountFilter;
         }
 
+        /**
+         * @param syllableTolerance how far a suggestion's syllable count, estimated
+         *                          from its spelling, may be from the target before
+         *                          it is dropped without being looked up; negative
+         *                          to look up every suggestion.
+         */
+        public void setSyllableTolerance(int syllableTolerance) {
+            this.syllableTolerance = syllableTolerance;
+        }
+
+        /**
+         * @param meter the stress pattern of the word being replaced, as its part of
+         *              speech; null to not filter by stress pattern.
+         */
+        public void setMeter(StressSignature meter) {
+            this.meter = meter;
+        }
+
         public void removeFilter(RhymeType filter) {
             rhymeFilters.remove(filter);
         }
@@ -185,6 +208,14 @@ public interface ParameterWrappers {
             return syllableCountFilter;
         }
 
+        public int getSyllableTolerance() {
+            return syllableTolerance;
+        }
+
+        public StressSignature getMeter() {
+            return meter;
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -196,7 +227,11 @@ public interface ParameterWrappers {
                 }
             }
 
-            builder.append(String.format("syllableCountFilter: %b", syllableCountFilter));
+            builder.append(String.format("syllableCountFilter: %b, syllableTolerance: %d", syllableCountFilter,
+                    syllableTolerance));
+            if (meter != null) {
+                builder.append(String.format(", meter: %s", meter));
+            }
             builder.append("}");
             return builder.toString();
         }
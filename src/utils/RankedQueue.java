@@ -0,0 +1,117 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Combines one or more lists into a queue of their distinct elements, in the
+ * same order as
+ * {@link utils.NullListOperations#combineListsPrioritiseDuplicates(ArrayList)}:
+ * descending order of occurrences, then order of first occurrence.
+ *
+ * The elements are kept in a heap rather than sorted, so taking the first k of
+ * n elements costs O(n + k log n) rather than O(n log n), and the rest are
+ * only ordered if they are asked for.
+ *
+ * @author 190021081
+ * @param <T> the type of element.
+ */
+public class RankedQueue<T> {
+
+    private static class Entry<T> implements Comparable<Entry<T>> {
+        private final T element;
+        private final int first;
+        private int count = 1;
+
+        private Entry(T element, int first) {
+            this.element = element;
+            this.first = first;
+        }
+
+        @Override
+        public int compareTo(Entry<T> other) {
+            return count != other.count ? other.count - count : first - other.first;
+        }
+    }
+
+    private final PriorityQueue<Entry<T>> heap;
+
+    /**
+     * @param lists lists to combine; any may be null.
+     */
+    public RankedQueue(Collection<? extends List<T>> lists) {
+        HashMap<T, Entry<T>> entries = new HashMap<>();
+        ArrayList<Entry<T>> ordered = new ArrayList<>();
+        for (List<T> list : lists) {
+            if (list != null) {
+                for (T element : list) {
+                    Entry<T> entry = entries.get(element);
+                    if (entry != null) {
+                        entry.count++;
+                    } else {
+                        entry = new Entry<>(element, ordered.size());
+                        entries.put(element, entry);
+                        ordered.add(entry);
+                    }
+                }
+            }
+        }
+        // built in one go, which heapifies in linear time
+        heap = new PriorityQueue<>(ordered);
+    }
+
+    /**
+     * Removes an element, so it will not be returned.
+     *
+     * @param element the element.
+     */
+    public void remove(T element) {
+        heap.removeIf(entry -> entry.element.equals(element));
+    }
+
+    /**
+     * @return the elements left, in no particular order.
+     */
+    public ArrayList<T> elements() {
+        ArrayList<T> elements = new ArrayList<>(heap.size());
+        for (Entry<T> entry : heap) {
+            elements.add(entry.element);
+        }
+        return elements;
+    }
+
+    public boolean isEmpty() {
+        return heap.isEmpty();
+    }
+
+    /**
+     * @return the number of elements left.
+     */
+    public int size() {
+        return heap.size();
+    }
+
+    /**
+     * @return the highest ranked element left, or null if there are none.
+     */
+    public T poll() {
+        Entry<T> entry = heap.poll();
+        return entry == null ? null : entry.element;
+    }
+
+    /**
+     * @param limit the most elements to take.
+     * @return the highest ranked elements left, in order, up to the limit.
+     */
+    public ArrayList<T> poll(int limit) {
+        ArrayList<T> polled = new ArrayList<>(Math.min(limit, heap.size()));
+        while (polled.size() < limit && !heap.isEmpty()) {
+            polled.add(heap.poll().element);
+        }
+        return polled;
+    }
+
+}
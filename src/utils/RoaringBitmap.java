@@ -0,0 +1,510 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * This class is a compressed set of non-negative ints, after Roaring bitmaps.
+ * Values are split by their high 16 bits into chunks, each stored in the
+ * cheaper of two containers: a sorted array of low 16 bits while a chunk has at
+ * most 4096 values, and a 65536-bit bitmap once it has more. Sparse sets cost
+ * about two bytes a value, dense sets one bit, and intersections and unions
+ * work a chunk at a time, never value by value across the whole range.
+ *
+ * {@link #add(int)} and {@link #remove(int)} change the set in place;
+ * {@link #and(RoaringBitmap)}, {@link #or(RoaringBitmap)} and
+ * {@link #andNot(RoaringBitmap)} return new sets. Not safe to change from
+ * several threads at once.
+ *
+ * @author 190021081
+ */
+public class RoaringBitmap {
+
+    // the most values an array container holds before it becomes a bitmap
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1 << 10; // 65536 bits
+
+    /*
+     * The low 16 bits of the values in one chunk. Operations return a container
+     * of whichever type suits the result; it may be one of the operands.
+     */
+    private abstract static class Container {
+        abstract int cardinality();
+
+        abstract boolean contains(char low);
+
+        abstract Container add(char low);
+
+        abstract Container remove(char low);
+
+        abstract Container copy();
+
+        abstract void forEach(int high, IntConsumer action);
+    }
+
+    private static final class ArrayContainer extends Container {
+        private char[] values;
+        private int cardinality;
+
+        private ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        private ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        int cardinality() {
+            return cardinality;
+        }
+
+        boolean contains(char low) {
+            return Arrays.binarySearch(values, 0, cardinality, low) >= 0;
+        }
+
+        Container add(char low) {
+            int index = Arrays.binarySearch(values, 0, cardinality, low);
+            if (index >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_MAX) {
+                return toBitmap().add(low);
+            }
+            index = -index - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, values.length * 2));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = low;
+            cardinality++;
+            return this;
+        }
+
+        Container remove(char low) {
+            int index = Arrays.binarySearch(values, 0, cardinality, low);
+            if (index >= 0) {
+                System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(1, cardinality)), cardinality);
+        }
+
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < cardinality; i++) {
+                action.accept(high | values[i]);
+            }
+        }
+
+        private BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.set(values[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        private int cardinality;
+
+        private BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        private BitmapContainer() {
+            this(new long[BITMAP_WORDS], 0);
+        }
+
+        /*
+         * Counts the bits, then becomes an array if there are few enough.
+         */
+        private static Container of(long[] words) {
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            BitmapContainer bitmap = new BitmapContainer(words, cardinality);
+            return cardinality <= ARRAY_MAX ? bitmap.toArray() : bitmap;
+        }
+
+        int cardinality() {
+            return cardinality;
+        }
+
+        boolean contains(char low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        private void set(char low) {
+            long before = words[low >>> 6];
+            words[low >>> 6] = before | (1L << low);
+            if (before != words[low >>> 6]) {
+                cardinality++;
+            }
+        }
+
+        Container add(char low) {
+            set(low);
+            return this;
+        }
+
+        Container remove(char low) {
+            long before = words[low >>> 6];
+            words[low >>> 6] = before & ~(1L << low);
+            if (before != words[low >>> 6]) {
+                cardinality--;
+            }
+            return cardinality <= ARRAY_MAX ? toArray() : this;
+        }
+
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    action.accept(high | (i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        private ArrayContainer toArray() {
+            char[] values = new char[Math.max(1, cardinality)];
+            int[] count = { 0 };
+            forEach(0, value -> values[count[0]++] = (char) value);
+            return new ArrayContainer(values, cardinality);
+        }
+    }
+
+    /*
+     * Pairwise operations on containers. Results never share state with either
+     * operand, and are null if empty.
+     */
+
+    private static Container and(Container a, Container b) {
+        if (a instanceof ArrayContainer && b instanceof ArrayContainer) {
+            ArrayContainer x = (ArrayContainer) a, y = (ArrayContainer) b;
+            char[] values = new char[Math.max(1, Math.min(x.cardinality, y.cardinality))];
+            int i = 0, j = 0, n = 0;
+            while (i < x.cardinality && j < y.cardinality) {
+                if (x.values[i] < y.values[j]) {
+                    i++;
+                } else if (x.values[i] > y.values[j]) {
+                    j++;
+                } else {
+                    values[n++] = x.values[i++];
+                    j++;
+                }
+            }
+            return n == 0 ? null : new ArrayContainer(values, n);
+        }
+        if (b instanceof ArrayContainer) {
+            Container swap = a;
+            a = b;
+            b = swap;
+        }
+        if (a instanceof ArrayContainer) {
+            ArrayContainer x = (ArrayContainer) a;
+            char[] values = new char[Math.max(1, x.cardinality)];
+            int n = 0;
+            for (int i = 0; i < x.cardinality; i++) {
+                if (b.contains(x.values[i])) {
+                    values[n++] = x.values[i];
+                }
+            }
+            return n == 0 ? null : new ArrayContainer(values, n);
+        }
+        long[] x = ((BitmapContainer) a).words, y = ((BitmapContainer) b).words;
+        long[] words = new long[BITMAP_WORDS];
+        for (int i = 0; i < BITMAP_WORDS; i++) {
+            words[i] = x[i] & y[i];
+        }
+        Container result = BitmapContainer.of(words);
+        return result.cardinality() == 0 ? null : result;
+    }
+
+    private static Container or(Container a, Container b) {
+        if (a instanceof ArrayContainer && b instanceof ArrayContainer) {
+            ArrayContainer x = (ArrayContainer) a, y = (ArrayContainer) b;
+            if (x.cardinality + y.cardinality > ARRAY_MAX) {
+                return or(x.toBitmap(), y);
+            }
+            char[] values = new char[Math.max(1, x.cardinality + y.cardinality)];
+            int i = 0, j = 0, n = 0;
+            while (i < x.cardinality || j < y.cardinality) {
+                if (j == y.cardinality || (i < x.cardinality && x.values[i] < y.values[j])) {
+                    values[n++] = x.values[i++];
+                } else if (i == x.cardinality || x.values[i] > y.values[j]) {
+                    values[n++] = y.values[j++];
+                } else {
+                    values[n++] = x.values[i++];
+                    j++;
+                }
+            }
+            return new ArrayContainer(values, n);
+        }
+        if (a instanceof ArrayContainer) {
+            Container swap = a;
+            a = b;
+            b = swap;
+        }
+        BitmapContainer result = (BitmapContainer) a.copy();
+        if (b instanceof ArrayContainer) {
+            ArrayContainer y = (ArrayContainer) b;
+            for (int i = 0; i < y.cardinality; i++) {
+                result.set(y.values[i]);
+            }
+            return result.cardinality <= ARRAY_MAX ? result.toArray() : result;
+        }
+        long[] y = ((BitmapContainer) b).words;
+        for (int i = 0; i < BITMAP_WORDS; i++) {
+            result.words[i] |= y[i];
+        }
+        return BitmapContainer.of(result.words);
+    }
+
+    private static Container andNot(Container a, Container b) {
+        if (a instanceof ArrayContainer) {
+            ArrayContainer x = (ArrayContainer) a;
+            char[] values = new char[Math.max(1, x.cardinality)];
+            int n = 0;
+            for (int i = 0; i < x.cardinality; i++) {
+                if (!b.contains(x.values[i])) {
+                    values[n++] = x.values[i];
+                }
+            }
+            return n == 0 ? null : new ArrayContainer(values, n);
+        }
+        long[] words = ((BitmapContainer) a).words.clone();
+        if (b instanceof ArrayContainer) {
+            ArrayContainer y = (ArrayContainer) b;
+            for (int i = 0; i < y.cardinality; i++) {
+                words[y.values[i] >>> 6] &= ~(1L << y.values[i]);
+            }
+        } else {
+            long[] y = ((BitmapContainer) b).words;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                words[i] &= ~y[i];
+            }
+        }
+        Container result = BitmapContainer.of(words);
+        return result.cardinality() == 0 ? null : result;
+    }
+
+    // the high 16 bits of each chunk, ascending, and the chunk's container
+    private char[] keys;
+    private Container[] containers;
+    private int size = 0;
+
+    public RoaringBitmap() {
+        this(4);
+    }
+
+    private RoaringBitmap(int capacity) {
+        keys = new char[Math.max(1, capacity)];
+        containers = new Container[Math.max(1, capacity)];
+    }
+
+    /**
+     * @param values the values; duplicates are ignored.
+     * @return a set of the values.
+     */
+    public static RoaringBitmap of(int... values) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int value : values) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    private static char high(int value) {
+        return (char) (value >>> 16);
+    }
+
+    private static char low(int value) {
+        return (char) value;
+    }
+
+    private int indexOf(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    /*
+     * Appends a chunk; keys must be appended in ascending order.
+     */
+    private void append(char key, Container container) {
+        if (container == null) {
+            return;
+        }
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        keys[size] = key;
+        containers[size] = container;
+        size++;
+    }
+
+    /**
+     * @param value a non-negative value.
+     */
+    public void add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+        int index = indexOf(high(value));
+        if (index >= 0) {
+            containers[index] = containers[index].add(low(value));
+            return;
+        }
+        index = -index - 1;
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = high(value);
+        containers[index] = new ArrayContainer().add(low(value));
+        size++;
+    }
+
+    public void remove(int value) {
+        int index = value < 0 ? -1 : indexOf(high(value));
+        if (index < 0) {
+            return;
+        }
+        containers[index] = containers[index].remove(low(value));
+        if (containers[index].cardinality() == 0) {
+            System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+            System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+            size--;
+            containers[size] = null;
+        }
+    }
+
+    public boolean contains(int value) {
+        int index = value < 0 ? -1 : indexOf(high(value));
+        return index >= 0 && containers[index].contains(low(value));
+    }
+
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param other another set.
+     * @return the values in both sets.
+     */
+    public RoaringBitmap and(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap(Math.min(size, other.size));
+        int i = 0, j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.append(keys[i], and(containers[i++], other.containers[j++]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param other another set.
+     * @return the values in either set.
+     */
+    public RoaringBitmap or(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap(size + other.size);
+        int i = 0, j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.append(keys[i], containers[i++].copy());
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], other.containers[j++].copy());
+            } else {
+                result.append(keys[i], or(containers[i++], other.containers[j++]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param other another set.
+     * @return the values in this set but not the other.
+     */
+    public RoaringBitmap andNot(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap(size);
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+            if (j < other.size && other.keys[j] == keys[i]) {
+                result.append(keys[i], andNot(containers[i], other.containers[j]));
+            } else {
+                result.append(keys[i], containers[i].copy());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return a copy of this set, which can be changed independently.
+     */
+    public RoaringBitmap copy() {
+        RoaringBitmap copy = new RoaringBitmap(size);
+        for (int i = 0; i < size; i++) {
+            copy.append(keys[i], containers[i].copy());
+        }
+        return copy;
+    }
+
+    /**
+     * @param action applied to each value, in ascending order.
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    /**
+     * @return the values, in ascending order.
+     */
+    public int[] toArray() {
+        int[] values = new int[cardinality()];
+        int[] count = { 0 };
+        forEach(value -> values[count[0]++] = value);
+        return values;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String toString() {
+        int[] values = toArray();
+        return values.length <= 20 ? Arrays.toString(values)
+                : String.format("[%d values, %d to %d]", values.length, values[0], values[values.length - 1]);
+    }
+
+}
@@ -0,0 +1,363 @@
+package words;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import utils.ParameterWrappers.FilterParameters.RhymeType;
+
+import static config.Configuration.LOG;
+import static config.Configuration.MAX_FORCED_RHYME_DISTANCE;
+
+/**
+ * This class is an alternate form of a
+ * {@link words.Pronunciation.SubPronunciation}, with the phonemes of every
+ * syllable coded as ints (see {@link words.PhonemeCode}) and packed into a
+ * single array, and stress kept as bitmasks. Every rhyme (from each syllable's
+ * nucleus to the end of the word) is fingerprinted once when built, so
+ * recognising a rhyme is a test for a shared fingerprint, confirmed by
+ * comparing ranges of the array. Matching allocates nothing, except for forced
+ * rhyme, which compares rhymes by {@link words.PhoneticFeatures} distance.
+ *
+ * It gives the same answers as comparing lists of {@link words.Syllable}s.
+ * Stress is kept in a long, so words of more than 64 syllables cannot be
+ * compacted.
+ *
+ * @author 190021081
+ */
+public class CompactPronunciation {
+
+    public static final int MAX_SYLLABLES = Long.SIZE;
+
+    private static final long SEED = 0x243F6A8885A308D3L;
+    // boundary markers for fingerprints, distinct from phoneme codes (which are never negative)
+    private static final int PART = -1;
+    private static final int SYLLABLE = -2;
+
+    // the phoneme codes of every syllable, in order
+    private final int[] phonemes;
+    /*
+     * where each part of each syllable starts: bounds[3s] is the onset of
+     * syllable s, bounds[3s + 1] the nucleus, bounds[3s + 2] the coda, and
+     * bounds[3s + 3] is the end of the syllable
+     */
+    private final int[] bounds;
+    private final int syllableCount;
+    private final int primary;
+    private final long secondary; // bit i is set if syllable i has secondary stress
+    private final long stressed; // bit i is set if syllable i has primary or secondary stress
+
+    /*
+     * 64-bit fingerprints of the rhyme from each syllable, grouped by the stress of
+     * the starting syllable. Each group is sorted, with the index of the starting
+     * syllable alongside, so that two groups can be intersected in one pass and
+     * fingerprint matches checked exactly.
+     */
+    private final long[] primaryPrints;
+    private final int[] primaryAt;
+    private final long[] secondaryPrints;
+    private final int[] secondaryAt;
+    private final long[] stressedPrints;
+    private final int[] stressedAt;
+    private final long[] unstressedPrints;
+    private final int[] unstressedAt;
+    // fingerprint of the whole last syllable, including its onset
+    private final long lastSyllablePrint;
+
+    private CompactPronunciation(int[] phonemes, int[] bounds, int syllableCount, int primary, long secondary) {
+        this.phonemes = phonemes;
+        this.bounds = bounds;
+        this.syllableCount = syllableCount;
+        this.primary = primary;
+        this.secondary = secondary;
+        this.stressed = secondary | (1L << primary);
+
+        long[] rhymePrints = new long[syllableCount];
+        long tail = SEED;
+        for (int s = syllableCount - 1; s >= 0; s--) {
+            rhymePrints[s] = hashParts(tail, s, 1);
+            tail = hashParts(tail, s, 0);
+        }
+        this.lastSyllablePrint = hashParts(SEED, syllableCount - 1, 0);
+
+        long unstressed = ~stressed & (syllableCount == Long.SIZE ? -1L : (1L << syllableCount) - 1);
+        this.primaryAt = indexes(1L << primary);
+        this.primaryPrints = sortedPrints(rhymePrints, primaryAt);
+        this.secondaryAt = indexes(secondary);
+        this.secondaryPrints = sortedPrints(rhymePrints, secondaryAt);
+        this.stressedAt = indexes(stressed);
+        this.stressedPrints = sortedPrints(rhymePrints, stressedAt);
+        this.unstressedAt = indexes(unstressed);
+        this.unstressedPrints = sortedPrints(rhymePrints, unstressedAt);
+    }
+
+    // fingerprinting
+
+    private static long mix(long hash, int value) {
+        hash = (hash ^ value) * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+
+    /*
+     * Hashes part of syllable s, from part "from" (0 onset, 1 nucleus) to the end
+     * of the syllable, onto a hash of the syllables after it.
+     */
+    private long hashParts(long hash, int s, int from) {
+        hash = mix(hash, SYLLABLE);
+        for (int part = from; part < 3; part++) {
+            hash = mix(hash, PART);
+            for (int i = bounds[3 * s + part]; i < bounds[3 * s + part + 1]; i++) {
+                hash = mix(hash, phonemes[i]);
+            }
+        }
+        return hash;
+    }
+
+    /*
+     * The indexes of the set bits of a mask, in ascending order.
+     */
+    private static int[] indexes(long mask) {
+        int[] indexes = new int[Long.bitCount(mask)];
+        for (int i = 0; mask != 0; i++) {
+            indexes[i] = Long.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
+        }
+        return indexes;
+    }
+
+    /*
+     * Picks out the fingerprints at the given syllables, and sorts them, keeping
+     * the syllable indexes alongside.
+     */
+    private static long[] sortedPrints(long[] rhymePrints, int[] at) {
+        long[] prints = new long[at.length];
+        for (int i = 0; i < at.length; i++) {
+            long print = rhymePrints[at[i]];
+            int index = at[i];
+            int j = i;
+            for (; j > 0 && prints[j - 1] > print; j--) {
+                prints[j] = prints[j - 1];
+                at[j] = at[j - 1];
+            }
+            prints[j] = print;
+            at[j] = index;
+        }
+        return prints;
+    }
+
+    /**
+     * @param syllables the syllables of a word.
+     * @param emphasis  the stressed syllables of the word.
+     * @return null if the word has no syllables or too many to compact.
+     */
+    public static CompactPronunciation build(ArrayList<Syllable> syllables, Emphasis emphasis) {
+        int syllableCount = syllables.size();
+        if (syllableCount == 0 || syllableCount > MAX_SYLLABLES) {
+            return null;
+        }
+
+        int length = 0;
+        for (Syllable syllable : syllables) {
+            length += PhonemeCode.countPhonemes(syllable.getOnset()) + PhonemeCode.countPhonemes(syllable.getNucleus())
+                    + PhonemeCode.countPhonemes(syllable.getCoda());
+        }
+
+        int[] phonemes = new int[length];
+        int[] bounds = new int[3 * syllableCount + 1];
+        int next = 0;
+        for (int s = 0; s < syllableCount; s++) {
+            Syllable syllable = syllables.get(s);
+            bounds[3 * s] = next;
+            next = PhonemeCode.encode(syllable.getOnset(), phonemes, next);
+            bounds[3 * s + 1] = next;
+            next = PhonemeCode.encode(syllable.getNucleus(), phonemes, next);
+            bounds[3 * s + 2] = next;
+            next = PhonemeCode.encode(syllable.getCoda(), phonemes, next);
+        }
+        bounds[3 * syllableCount] = next;
+
+        long secondary = 0;
+        if (emphasis.getSecondary() != null) {
+            for (int index : emphasis.getSecondary()) {
+                secondary |= 1L << index;
+            }
+        }
+        return new CompactPronunciation(phonemes, bounds, syllableCount, emphasis.getPrimary(), secondary);
+    }
+
+    public int getSyllableCount() {
+        return syllableCount;
+    }
+
+    /**
+     * @return a bitmask with bit i set if syllable i has primary or secondary
+     *         stress.
+     */
+    public long getStressMask() {
+        return stressed;
+    }
+
+    int getPrimary() {
+        return primary;
+    }
+
+    /**
+     * @param syllable a syllable index.
+     * @return true if the syllable has secondary stress.
+     */
+    boolean hasSecondaryStress(int syllable) {
+        return (secondary >>> syllable & 1) != 0;
+    }
+
+    /**
+     * @param syllable a syllable index.
+     * @return true if the syllable has primary or secondary stress.
+     */
+    public boolean isStressed(int syllable) {
+        return (stressed >>> syllable & 1) != 0;
+    }
+
+    /*
+     * Compares part of syllable s of this with part of syllable t of other, from
+     * part "from" (0 onset, 1 nucleus, 2 coda) to the end of the syllable.
+     */
+    private boolean partsEqual(int s, CompactPronunciation other, int t, int from) {
+        for (int part = from; part < 3; part++) {
+            if (!Arrays.equals(this.phonemes, this.bounds[3 * s + part], this.bounds[3 * s + part + 1],
+                    other.phonemes, other.bounds[3 * t + part], other.bounds[3 * t + part + 1])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares the rhyme from syllable s of this word with the rhyme from
+     * syllable t of the other, i.e. everything from the nucleus of the starting
+     * syllable to the end of the word.
+     *
+     * @param s     the syllable of this word to rhyme from.
+     * @param other the other word.
+     * @param t     the syllable of the other word to rhyme from.
+     * @return true if the rhymes match syllable for syllable.
+     */
+    public boolean rhymesFrom(int s, CompactPronunciation other, int t) {
+        if (this.syllableCount - s != other.syllableCount - t) {
+            return false;
+        }
+        if (!partsEqual(s, other, t, 1)) {
+            return false;
+        }
+        for (int i = 1; s + i < syllableCount; i++) {
+            if (!partsEqual(s + i, other, t + i, 0)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param s the syllable to rhyme from.
+     * @return the phoneme codes from the nucleus of syllable s to the end of the
+     *         word.
+     */
+    public int[] getRhymeCodes(int s) {
+        return Arrays.copyOfRange(phonemes, bounds[3 * s + 1], phonemes.length);
+    }
+
+    /*
+     * The least phonetic distance from a rhyme of one group of syllables to a
+     * rhyme of the other, or limit + 1 if none is within the limit.
+     */
+    private int leastDistance(int[] at, CompactPronunciation other, int[] otherAt, int limit) {
+        int least = limit + 1;
+        for (int s : at) {
+            int[] rhyme = getRhymeCodes(s);
+            for (int t : otherAt) {
+                least = Math.min(least, PhoneticFeatures.rhymeDistance(rhyme, other.getRhymeCodes(t), least - 1));
+            }
+        }
+        return least;
+    }
+
+    /**
+     * The phonetic distance between the closest stressed rhymes of two words,
+     * pairing syllables as for perfect rhyme.
+     *
+     * @param other the other word.
+     * @param limit the greatest distance of interest.
+     * @return the distance, or limit + 1 if it is more than the limit.
+     */
+    public int forcedRhymeDistance(CompactPronunciation other, int limit) {
+        return Math.min(leastDistance(primaryAt, other, other.stressedAt, limit),
+                leastDistance(secondaryAt, other, other.primaryAt, limit));
+    }
+
+    /*
+     * Intersects two sorted groups of fingerprints. Equal fingerprints are checked
+     * exactly, so a collision cannot produce a false rhyme.
+     */
+    private boolean intersects(long[] prints, int[] at, CompactPronunciation other, long[] otherPrints,
+            int[] otherAt) {
+        int i = 0;
+        int j = 0;
+        while (i < prints.length && j < otherPrints.length) {
+            if (prints[i] < otherPrints[j]) {
+                i++;
+            } else if (prints[i] > otherPrints[j]) {
+                j++;
+            } else {
+                long print = prints[i];
+                int groupEnd = j;
+                while (groupEnd < otherPrints.length && otherPrints[groupEnd] == print) {
+                    groupEnd++;
+                }
+                for (; i < prints.length && prints[i] == print; i++) {
+                    for (int k = j; k < groupEnd; k++) {
+                        if (rhymesFrom(at[i], other, otherAt[k])) {
+                            return true;
+                        }
+                    }
+                }
+                j = groupEnd;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Wrapper function for different types of rhyme recognition. Each type is a
+     * test for a common fingerprint between groups of rhymes.
+     *
+     * @param rhyme the type of rhyme to match.
+     * @param other to match against.
+     * @return true iff the two pronunciations rhyme.
+     */
+    public boolean matchesWith(RhymeType rhyme, CompactPronunciation other) {
+        switch (rhyme) {
+            case PERFECT_RHYME:
+                /* primary to primary or secondary, secondary to primary */
+                return intersects(primaryPrints, primaryAt, other, other.stressedPrints, other.stressedAt)
+                        || intersects(secondaryPrints, secondaryAt, other, other.primaryPrints, other.primaryAt);
+            case SYLLABIC_RHYME:
+                /* last to last; includes onset */
+                return lastSyllablePrint == other.lastSyllablePrint
+                        && partsEqual(syllableCount - 1, other, other.syllableCount - 1, 0);
+            case FORCED_RHYME:
+                /* near but not exact, from stressed syllables as for perfect rhyme */
+                return forcedRhymeDistance(other, MAX_FORCED_RHYME_DISTANCE) <= MAX_FORCED_RHYME_DISTANCE
+                        && !matchesWith(RhymeType.PERFECT_RHYME, other);
+            case IMPERFECT_RHYME:
+                /* stressed to unstressed, unstressed to stressed, secondary to secondary */
+                return intersects(stressedPrints, stressedAt, other, other.unstressedPrints, other.unstressedAt)
+                        || intersects(unstressedPrints, unstressedAt, other, other.stressedPrints, other.stressedAt)
+                        || intersects(secondaryPrints, secondaryAt, other, other.secondaryPrints, other.secondaryAt);
+            case WEAK_RHYME:
+                /* unstressed to unstressed */
+                return intersects(unstressedPrints, unstressedAt, other, other.unstressedPrints, other.unstressedAt);
+            default:
+                LOG.writeTempLog("Attempted unimplemented RhymeType: " + rhyme.name());
+                return false;
+        }
+    }
+
+}
@@ -0,0 +1,256 @@
+package words;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import words.Pronunciation.SubPronunciation;
+
+/**
+ * This class finds sound-based poetic devices in a poem: alliteration (words
+ * that start with the same consonant), assonance (the same stressed vowel) and
+ * consonance (the same final consonant).
+ *
+ * Each word is visited once, and added to a hash bucket for each of its sounds,
+ * for its line and for its stanza, so a scan takes time linear in the length of
+ * the poem. Words that have not been looked up yet are scanned by their
+ * pronunciation estimated from their spelling, so a scan never waits on
+ * WordsAPI and can be re-run after every edit.
+ *
+ * @author 190021081
+ */
+public abstract class DeviceScanner {
+
+    // the fewest words sharing a sound across the lines of a stanza to be reported
+    private static final int MIN_STANZA_CLUSTER = 3;
+    private static final String SCHWA = "ə";
+
+    public enum Device {
+        ALLITERATION("alliteration"),
+        ASSONANCE("assonance"),
+        CONSONANCE("consonance");
+
+        private final String label;
+
+        private Device(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * A word in a cluster, and where it is.
+     */
+    public static class Occurrence {
+        private final int lineIndex;
+        private final int tokenIndex;
+        private final SuperWord word;
+
+        private Occurrence(int lineIndex, int tokenIndex, SuperWord word) {
+            this.lineIndex = lineIndex;
+            this.tokenIndex = tokenIndex;
+            this.word = word;
+        }
+
+        public int getLineIndex() {
+            return lineIndex;
+        }
+
+        public int getTokenIndex() {
+            return tokenIndex;
+        }
+
+        public SuperWord getWord() {
+            return word;
+        }
+    }
+
+    /**
+     * Words of one stanza that share a sound, either within a line or across its
+     * lines.
+     */
+    public static class Cluster {
+        private final Device device;
+        private final String sound;
+        private final int stanzaIndex;
+        private final boolean withinLine;
+        private final ArrayList<Occurrence> occurrences;
+
+        private Cluster(Device device, String sound, int stanzaIndex, boolean withinLine,
+                ArrayList<Occurrence> occurrences) {
+            this.device = device;
+            this.sound = sound;
+            this.stanzaIndex = stanzaIndex;
+            this.withinLine = withinLine;
+            this.occurrences = occurrences;
+        }
+
+        public Device getDevice() {
+            return device;
+        }
+
+        public String getSound() {
+            return sound;
+        }
+
+        public int getStanzaIndex() {
+            return stanzaIndex;
+        }
+
+        public boolean isWithinLine() {
+            return withinLine;
+        }
+
+        public List<Occurrence> getOccurrences() {
+            return occurrences;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public String toString() {
+            StringBuilder builder = new StringBuilder(String.format("%s /%s/ ", device.getLabel(), sound));
+            if (withinLine) {
+                builder.append(String.format("in line %d: ", occurrences.get(0).lineIndex + 1));
+            } else {
+                builder.append("across lines: ");
+            }
+            for (int i = 0; i < occurrences.size(); i++) {
+                Occurrence occurrence = occurrences.get(i);
+                builder.append(i == 0 ? "" : ", ").append(occurrence.word.getPlaintext());
+                if (!withinLine) {
+                    builder.append(String.format(" (%d)", occurrence.lineIndex + 1));
+                }
+            }
+            return builder.toString();
+        }
+    }
+
+    /*
+     * The sound of a pronunciation for each device, or "" if it has none (e.g. a
+     * word starting with a vowel has no alliterating sound).
+     */
+    private static String getSound(Device device, SubPronunciation sub) {
+        ArrayList<Syllable> syllables = sub.syllables;
+        switch (device) {
+            case ALLITERATION:
+                return PhonemeCode.firstPhoneme(syllables.get(0).getOnset());
+            case ASSONANCE:
+                String nucleus = syllables.get(sub.emphasis.getPrimary()).getNucleus();
+                // schwa is the reduced vowel of function words such as "a" and "of"
+                return nucleus.equals(SCHWA) ? "" : nucleus;
+            case CONSONANCE:
+                return PhonemeCode.lastPhoneme(syllables.get(syllables.size() - 1).getCoda());
+            default:
+                return "";
+        }
+    }
+
+    private static EnumMap<Device, LinkedHashMap<String, ArrayList<Occurrence>>> newBuckets() {
+        EnumMap<Device, LinkedHashMap<String, ArrayList<Occurrence>>> buckets = new EnumMap<>(Device.class);
+        for (Device device : Device.values()) {
+            buckets.put(device, new LinkedHashMap<>());
+        }
+        return buckets;
+    }
+
+    /*
+     * Adds a cluster for each bucket of at least minSize words; buckets across
+     * lines must also span more than one line.
+     */
+    private static void addClusters(EnumMap<Device, LinkedHashMap<String, ArrayList<Occurrence>>> buckets,
+            int stanzaIndex, boolean withinLine, int minSize, ArrayList<Cluster> clusters) {
+        for (Map.Entry<Device, LinkedHashMap<String, ArrayList<Occurrence>>> device : buckets.entrySet()) {
+            for (Map.Entry<String, ArrayList<Occurrence>> bucket : device.getValue().entrySet()) {
+                ArrayList<Occurrence> occurrences = bucket.getValue();
+                if (occurrences.size() >= minSize && (withinLine
+                        || occurrences.get(0).lineIndex != occurrences.get(occurrences.size() - 1).lineIndex)) {
+                    clusters.add(new Cluster(device.getKey(), bucket.getKey(), stanzaIndex, withinLine, occurrences));
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the devices in one stanza.
+     *
+     * @param stanza      the stanza.
+     * @param stanzaIndex the index of the stanza in its poem, for reporting.
+     * @return clusters within each line, in line order, followed by clusters
+     *         across lines.
+     */
+    public static ArrayList<Cluster> scan(Stanza stanza, int stanzaIndex) {
+        ArrayList<Cluster> clusters = new ArrayList<>();
+        EnumMap<Device, LinkedHashMap<String, ArrayList<Occurrence>>> stanzaBuckets = newBuckets();
+
+        ArrayList<ArrayList<Token>> lines = stanza.getLines();
+        for (int lineIndex = 0; lineIndex < lines.size(); lineIndex++) {
+            EnumMap<Device, LinkedHashMap<String, ArrayList<Occurrence>>> lineBuckets = newBuckets();
+            ArrayList<Token> line = lines.get(lineIndex);
+            for (int tokenIndex = 0; tokenIndex < line.size(); tokenIndex++) {
+                if (!(line.get(tokenIndex) instanceof SuperWord)) {
+                    continue;
+                }
+                SuperWord word = (SuperWord) line.get(tokenIndex);
+                List<SubPronunciation> pronunciations = word.getPronunciationsWithoutLookup();
+                // the first pronunciation, as the part of speech in context is not known
+                if (pronunciations.isEmpty() || pronunciations.get(0).syllables.isEmpty()) {
+                    continue;
+                }
+                SubPronunciation sub = pronunciations.get(0);
+                Occurrence occurrence = new Occurrence(lineIndex, tokenIndex, word);
+                for (Device device : Device.values()) {
+                    String sound = getSound(device, sub);
+                    if (!sound.isEmpty()) {
+                        lineBuckets.get(device).computeIfAbsent(sound, key -> new ArrayList<>()).add(occurrence);
+                        stanzaBuckets.get(device).computeIfAbsent(sound, key -> new ArrayList<>()).add(occurrence);
+                    }
+                }
+            }
+            addClusters(lineBuckets, stanzaIndex, true, 2, clusters);
+        }
+        addClusters(stanzaBuckets, stanzaIndex, false, MIN_STANZA_CLUSTER, clusters);
+        return clusters;
+    }
+
+    /**
+     * Finds the devices in every stanza of a poem.
+     *
+     * @param poem the poem.
+     * @return clusters, in stanza order.
+     */
+    public static ArrayList<Cluster> scan(Poem poem) {
+        ArrayList<Cluster> clusters = new ArrayList<>();
+        for (int stanzaIndex = 0; stanzaIndex < poem.getStanzaCount(); stanzaIndex++) {
+            clusters.addAll(scan(poem.getStanzas().get(stanzaIndex), stanzaIndex));
+        }
+        return clusters;
+    }
+
+    /**
+     * @param clusters the results of a scan.
+     * @return the number of clusters of each device, e.g. "alliteration 2,
+     *         assonance 0, consonance 1".
+     */
+    public static String summarise(List<Cluster> clusters) {
+        EnumMap<Device, Integer> counts = new EnumMap<>(Device.class);
+        for (Device device : Device.values()) {
+            counts.put(device, 0);
+        }
+        for (Cluster cluster : clusters) {
+            counts.merge(cluster.device, 1, Integer::sum);
+        }
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<Device, Integer> count : counts.entrySet()) {
+            builder.append(builder.length() == 0 ? "" : ", ")
+                    .append(String.format("%s %d", count.getKey().getLabel(), count.getValue()));
+        }
+        return builder.toString();
+    }
+
+}
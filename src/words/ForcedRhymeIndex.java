@@ -0,0 +1,147 @@
+package words;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import utils.BKTree;
+import utils.Pair;
+import utils.ParameterWrappers.FilterParameters.RhymeType;
+import words.Pronunciation.SubPronunciation;
+
+import static config.Configuration.MAX_FORCED_RHYME_DISTANCE;
+
+/**
+ * This class indexes the stressed rhymes of every populated word (from each
+ * stressed nucleus to the end of the word) in a {@link utils.BKTree} under
+ * {@link words.PhoneticFeatures#rhymeDistance(int[], int[])}, so finding the
+ * forced rhymes of a word searches a small part of the tree rather than
+ * comparing against every known word.
+ *
+ * @author 190021081
+ */
+public abstract class ForcedRhymeIndex {
+
+    private static final int PRIMARY = 1;
+    private static final int SECONDARY = 2;
+
+    private static class Entry {
+        private final SuperWord word;
+        private final SubPronunciation sub;
+        private final EnumSet<PartOfSpeech> partsOfSpeech;
+        private final int rhymeLength;
+        private final int stress;
+
+        private Entry(SuperWord word, SubPronunciation sub, EnumSet<PartOfSpeech> partsOfSpeech, int rhymeLength,
+                int stress) {
+            this.word = word;
+            this.sub = sub;
+            this.partsOfSpeech = partsOfSpeech;
+            this.rhymeLength = rhymeLength;
+            this.stress = stress;
+        }
+    }
+
+    /*
+     * A distinct rhyme, and every word that has it. Two rhymes are at distance 0
+     * iff their phonemes are the same.
+     */
+    private static class Rhyme {
+        private final int[] codes;
+        private final ArrayList<Entry> entries = new ArrayList<>();
+
+        private Rhyme(int[] codes) {
+            this.codes = codes;
+        }
+    }
+
+    private static final BKTree<Rhyme> tree = new BKTree<>(
+            (rhyme1, rhyme2) -> PhoneticFeatures.rhymeDistance(rhyme1.codes, rhyme2.codes));
+    private static final Set<SuperWord> registered = ConcurrentHashMap.newKeySet();
+
+    private static int getStress(CompactPronunciation compact, int syllable) {
+        return (syllable == compact.getPrimary() ? PRIMARY : 0)
+                | (compact.hasSecondaryStress(syllable) ? SECONDARY : 0);
+    }
+
+    private static void add(int[] codes, Entry entry) {
+        Rhyme rhyme = new Rhyme(codes);
+        ArrayList<Pair<Rhyme, Integer>> same = tree.search(rhyme, 0);
+        if (same.isEmpty()) {
+            tree.add(rhyme);
+        } else {
+            rhyme = same.get(0).one();
+        }
+        rhyme.entries.add(entry);
+    }
+
+    /**
+     * Adds the stressed rhymes of a populated word to the index. Does nothing if
+     * it is already there. Words too long to compact are not indexed.
+     *
+     * @param word          the word.
+     * @param pronunciation the word's pronunciation; words without one are not
+     *                      indexed.
+     */
+    static synchronized void register(SuperWord word, Pronunciation pronunciation) {
+        if (pronunciation == null || !registered.add(word)) {
+            return;
+        }
+        for (Map.Entry<SubPronunciation, EnumSet<PartOfSpeech>> entry : pronunciation.getDistinctSubPronunciations()
+                .entrySet()) {
+            CompactPronunciation compact = entry.getKey().compact;
+            if (compact == null) {
+                continue;
+            }
+            for (int s = 0; s < compact.getSyllableCount(); s++) {
+                int stress = getStress(compact, s);
+                if (stress != 0) {
+                    add(compact.getRhymeCodes(s), new Entry(word, entry.getKey(), entry.getValue(),
+                            compact.getSyllableCount() - s, stress));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of distinct stressed rhymes in the index.
+     */
+    public static int size() {
+        return tree.size();
+    }
+
+    /*
+     * Adds the forced rhymes of one pronunciation: near rhymes from its primary
+     * stress to any stressed syllable and from its secondary stresses to primary
+     * stress, leaving out pronunciations that perfectly rhyme.
+     */
+    static synchronized void collect(SubPronunciation sub, int syllableCount, PartOfSpeech pos,
+            HashMap<SuperWord, Integer> found) {
+        CompactPronunciation compact = sub.compact;
+        if (compact == null) {
+            return;
+        }
+        for (int s = 0; s < compact.getSyllableCount(); s++) {
+            int stress = getStress(compact, s);
+            if (stress == 0) {
+                continue;
+            }
+            int matches = (stress & PRIMARY) != 0 ? PRIMARY | SECONDARY : PRIMARY;
+            for (Pair<Rhyme, Integer> near : tree.search(new Rhyme(compact.getRhymeCodes(s)),
+                    MAX_FORCED_RHYME_DISTANCE)) {
+                for (Entry entry : near.one().entries) {
+                    if ((entry.stress & matches) != 0
+                            && (syllableCount <= 0 || entry.sub.syllables.size() == syllableCount)
+                            && (pos == null || entry.partsOfSpeech.contains(pos))
+                            && !sub.matchesWith(RhymeType.PERFECT_RHYME, entry.sub)) {
+                        found.merge(entry.word, entry.rhymeLength, Math::max);
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,314 @@
+package words;
+
+import java.util.ArrayList;
+
+import utils.Pair;
+
+/**
+ * This class estimates the IPA of an English word from its spelling, for words
+ * that WordsAPI has no pronunciation for. The output is in the same form as
+ * WordsAPI's, e.g. "'bɑtəl", so it can be parsed by
+ * {@link words.IPAHandler#getSyllables(String)}.
+ *
+ * Letters are read left to right, and at each position the first rule in
+ * {@link #RULES} whose letters match and whose context holds is applied. Stress
+ * is then placed by a few prefix and suffix heuristics, and the vowels of
+ * unstressed syllables are reduced. The estimate is often wrong in the detail
+ * but usually has the right number of syllables and a plausible rhyme, which is
+ * better than nothing.
+ *
+ * @author 190021081
+ */
+public abstract class GraphemeToPhoneme {
+
+    private static final char P_EMPHASIS = '\'';
+    private static final char SPACE = '_';
+    private static final String VOWEL_LETTERS = "aeiouy";
+
+    private enum Context {
+        ANY,
+        // at the start of the word
+        START,
+        // at the end of the word
+        END,
+        // followed by e, i or y
+        FRONT,
+        // not followed by a vowel letter
+        CLOSED,
+        // followed by one consonant letter and a final e (or es), as in "make"
+        MAGIC,
+        // at the end of the word (or before a final s) after an earlier vowel
+        SILENT
+    }
+
+    private static class Rule {
+        private final String letters;
+        private final String phonemes;
+        private final Context context;
+
+        private Rule(String letters, String phonemes, Context context) {
+            this.letters = letters;
+            this.phonemes = phonemes;
+            this.context = context;
+        }
+    }
+
+    /*
+     * Longer spellings come before shorter ones, and narrower contexts before
+     * wider ones.
+     */
+    private static final Rule[] RULES = {
+            /* endings */
+            rule("cious", "ʃəs", Context.END), rule("tious", "ʃəs", Context.END),
+            rule("tion", "ʃən", Context.ANY), rule("sion", "ʒən", Context.ANY),
+            rule("ture", "tʃər", Context.END), rule("ous", "əs", Context.END),
+            /* consonant clusters */
+            rule("tch", "tʃ", Context.ANY), rule("dge", "dʒ", Context.ANY),
+            rule("ch", "tʃ", Context.ANY), rule("sh", "ʃ", Context.ANY), rule("th", "θ", Context.ANY),
+            rule("ph", "f", Context.ANY), rule("wh", "w", Context.ANY), rule("ck", "k", Context.ANY),
+            rule("nge", "ndʒ", Context.END), rule("ng", "ndʒ", Context.FRONT), rule("ng", "ŋ", Context.ANY),
+            rule("nk", "ŋk", Context.ANY), rule("qu", "kw", Context.ANY), rule("kn", "n", Context.START),
+            rule("gn", "n", Context.START), rule("wr", "r", Context.START), rule("rh", "r", Context.START),
+            rule("gh", "ɡ", Context.START), rule("mb", "m", Context.END),
+            /* vowel spellings */
+            rule("eigh", "eɪ", Context.ANY), rule("augh", "ɔ", Context.ANY), rule("ough", "oʊ", Context.ANY),
+            rule("eau", "ju", Context.ANY), rule("igh", "aɪ", Context.ANY), rule("gh", "", Context.ANY),
+            rule("air", "ɛr", Context.ANY), rule("ear", "ɪr", Context.ANY), rule("eer", "ɪr", Context.ANY),
+            rule("ee", "i", Context.ANY), rule("ea", "i", Context.ANY), rule("ie", "i", Context.ANY),
+            rule("ei", "eɪ", Context.ANY), rule("ey", "i", Context.END), rule("oo", "u", Context.ANY),
+            rule("ou", "aʊ", Context.ANY), rule("ow", "oʊ", Context.END), rule("ow", "aʊ", Context.ANY),
+            rule("oi", "ɔɪ", Context.ANY), rule("oy", "ɔɪ", Context.ANY), rule("ai", "eɪ", Context.ANY),
+            rule("ay", "eɪ", Context.ANY), rule("au", "ɔ", Context.ANY), rule("aw", "ɔ", Context.ANY),
+            rule("oa", "oʊ", Context.ANY), rule("ue", "u", Context.END), rule("ew", "u", Context.ANY),
+            rule("wor", "wər", Context.CLOSED), rule("ar", "ɑr", Context.CLOSED), rule("or", "ɔr", Context.CLOSED),
+            rule("er", "ər", Context.CLOSED), rule("ir", "ər", Context.CLOSED), rule("ur", "ər", Context.CLOSED),
+            rule("le", "əl", Context.END),
+            /* single vowels */
+            rule("a", "eɪ", Context.MAGIC), rule("e", "i", Context.MAGIC), rule("i", "aɪ", Context.MAGIC),
+            rule("o", "oʊ", Context.MAGIC), rule("u", "u", Context.MAGIC), rule("y", "aɪ", Context.MAGIC),
+            rule("e", "", Context.SILENT), rule("y", "i", Context.SILENT), rule("y", "j", Context.START),
+            rule("a", "ə", Context.END), rule("e", "i", Context.END), rule("i", "i", Context.END),
+            rule("o", "oʊ", Context.END), rule("u", "u", Context.END), rule("y", "aɪ", Context.END),
+            rule("a", "æ", Context.ANY), rule("e", "ɛ", Context.ANY), rule("i", "ɪ", Context.ANY),
+            rule("o", "ɑ", Context.ANY), rule("u", "ʌ", Context.ANY), rule("y", "ɪ", Context.ANY),
+            /* single consonants */
+            rule("c", "s", Context.FRONT), rule("c", "k", Context.ANY), rule("g", "dʒ", Context.FRONT),
+            rule("g", "ɡ", Context.ANY), rule("x", "z", Context.START), rule("x", "ks", Context.ANY),
+            rule("j", "dʒ", Context.ANY), rule("q", "k", Context.ANY), rule("b", "b", Context.ANY),
+            rule("d", "d", Context.ANY), rule("f", "f", Context.ANY), rule("h", "h", Context.ANY),
+            rule("k", "k", Context.ANY), rule("l", "l", Context.ANY), rule("m", "m", Context.ANY),
+            rule("n", "n", Context.ANY), rule("p", "p", Context.ANY), rule("r", "r", Context.ANY),
+            rule("s", "s", Context.ANY), rule("t", "t", Context.ANY), rule("v", "v", Context.ANY),
+            rule("w", "w", Context.ANY), rule("z", "z", Context.ANY) };
+
+    // prefixes that are usually unstressed, e.g. "be" in "begin"
+    private static final String[] UNSTRESSED_PREFIXES = { "a", "be", "de", "re", "con", "com", "ex", "in", "un",
+            "dis", "mis", "pre", "pro", "sub" };
+    // suffixes that put stress on the syllable before them, e.g. "ic" in "poetic"
+    private static final String[] PENULTIMATE_SUFFIXES = { "tion", "sion", "ic", "ial", "ian", "ious" };
+    // suffixes that put stress two syllables before them, e.g. "ity" in "ability"
+    private static final String[] ANTEPENULTIMATE_SUFFIXES = { "ity", "ical", "ify", "graphy", "logy" };
+    // suffixes that are stressed themselves, e.g. "eer" in "engineer"
+    private static final String[] STRESSED_SUFFIXES = { "ee", "eer", "oon", "ese", "ique", "ette" };
+
+    // unstressed vowels that are reduced to schwa
+    private static final String REDUCIBLE = "æɛɑʌɔ";
+    private static final char SCHWA = 'ə';
+
+    // RULES, grouped by first letter
+    private static final Rule[][] RULES_BY_LETTER = new Rule[26][];
+
+    static {
+        for (char letter = 'a'; letter <= 'z'; letter++) {
+            ArrayList<Rule> rules = new ArrayList<>();
+            for (Rule rule : RULES) {
+                if (rule.letters.charAt(0) == letter) {
+                    rules.add(rule);
+                }
+            }
+            RULES_BY_LETTER[letter - 'a'] = rules.toArray(new Rule[0]);
+        }
+    }
+
+    private static Rule rule(String letters, String phonemes, Context context) {
+        return new Rule(letters, phonemes, context);
+    }
+
+    private static boolean isVowelLetter(char chr) {
+        return VOWEL_LETTERS.indexOf(chr) >= 0;
+    }
+
+    private static boolean hasVowelLetterBefore(String word, int index) {
+        for (int i = 0; i < index; i++) {
+            if (isVowelLetter(word.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean holds(Context context, String word, int start, int end) {
+        switch (context) {
+            case START:
+                return start == 0;
+            case END:
+                return end == word.length();
+            case FRONT:
+                return end < word.length() && "eiy".indexOf(word.charAt(end)) >= 0;
+            case CLOSED:
+                return end == word.length() || !isVowelLetter(word.charAt(end)) && word.charAt(end) != 'r';
+            case MAGIC:
+                return end + 2 <= word.length() && !isVowelLetter(word.charAt(end)) && word.charAt(end + 1) == 'e'
+                        && (end + 2 == word.length() || end + 3 == word.length() && word.charAt(end + 2) == 's');
+            case SILENT:
+                return (end == word.length() || end + 1 == word.length() && word.charAt(end) == 's')
+                        && hasVowelLetterBefore(word, start);
+            default:
+                return true;
+        }
+    }
+
+    /*
+     * Converts the letters of one word to phonemes, without stress.
+     */
+    private static String toPhonemes(String word) {
+        StringBuilder phonemes = new StringBuilder();
+        int i = 0;
+        while (i < word.length()) {
+            char chr = word.charAt(i);
+            // a doubled consonant is pronounced once
+            if (i > 0 && chr == word.charAt(i - 1) && !isVowelLetter(chr)) {
+                i++;
+                continue;
+            }
+            Rule match = null;
+            for (Rule rule : RULES_BY_LETTER[chr - 'a']) {
+                if (word.startsWith(rule.letters, i) && holds(rule.context, word, i, i + rule.letters.length())) {
+                    match = rule;
+                    break;
+                }
+            }
+            if (match == null) {
+                i++; // not a letter with a rule
+                continue;
+            }
+            phonemes.append(match.phonemes);
+            i += match.letters.length();
+        }
+        return phonemes.toString();
+    }
+
+    private static String endingOf(String word, String[] suffixes) {
+        for (String suffix : suffixes) {
+            if (word.endsWith(suffix) && word.length() > suffix.length() + 1) {
+                return suffix;
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Guesses which syllable of a word is stressed.
+     */
+    private static int stressedSyllable(String word, int syllableCount) {
+        if (syllableCount < 2) {
+            return 0;
+        }
+        if (endingOf(word, STRESSED_SUFFIXES) != null) {
+            return syllableCount - 1;
+        }
+        if (endingOf(word, ANTEPENULTIMATE_SUFFIXES) != null) {
+            return Math.max(0, syllableCount - 3);
+        }
+        if (endingOf(word, PENULTIMATE_SUFFIXES) != null) {
+            return syllableCount - 2;
+        }
+        for (String prefix : UNSTRESSED_PREFIXES) {
+            // long enough that the prefix is unlikely to be the whole stem
+            if (word.startsWith(prefix) && word.length() >= prefix.length() + 4) {
+                return 1;
+            }
+        }
+        return 0;
+    }
+
+    /*
+     * Estimates the IPA of a single word, with its primary stress marked.
+     */
+    private static String wordToIPA(String word) {
+        String phonemes = toPhonemes(word);
+        ArrayList<Syllable> syllables = IPASyllabifier.syllabify(phonemes).one();
+        if (syllables.isEmpty()) {
+            return phonemes;
+        }
+        int stressed = stressedSyllable(word, syllables.size());
+
+        StringBuilder ipa = new StringBuilder(phonemes);
+        int stressAt = 0;
+        int from = 0;
+        for (int s = 0; s < syllables.size(); s++) {
+            Syllable syllable = syllables.get(s);
+            int onset = ipa.indexOf(syllable.getOnset() + syllable.getNucleus(), from);
+            int nucleus = onset + syllable.getOnset().length();
+            from = nucleus + syllable.getNucleus().length();
+            if (s == stressed) {
+                // an affricate is split by the syllabifier, but stress goes before all of it
+                boolean affricate = onset > 0 && "ʃʒ".indexOf(ipa.charAt(onset)) >= 0
+                        && "td".indexOf(ipa.charAt(onset - 1)) >= 0;
+                stressAt = s == 0 ? 0 : affricate ? onset - 1 : onset;
+            } else if (syllable.getNucleus().length() == 1 && REDUCIBLE.indexOf(ipa.charAt(nucleus)) >= 0) {
+                ipa.setCharAt(nucleus, SCHWA);
+            }
+        }
+        return ipa.insert(stressAt, P_EMPHASIS).toString();
+    }
+
+    /**
+     * Estimates the IPA of a word or phrase from its spelling. Words of a phrase
+     * (separated by spaces or hyphens) are joined with "_", as WordsAPI does.
+     * Characters other than letters are ignored.
+     *
+     * @param plaintext the word or phrase.
+     * @return the estimated IPA, e.g. "'bɑtəl" for "bottle"; empty if there are
+     *         no letters.
+     */
+    public static String toIPA(String plaintext) {
+        StringBuilder ipa = new StringBuilder();
+        StringBuilder letters = new StringBuilder();
+        for (int i = 0; i <= plaintext.length(); i++) {
+            char chr = i < plaintext.length() ? Character.toLowerCase(plaintext.charAt(i)) : ' ';
+            if (chr >= 'a' && chr <= 'z') {
+                letters.append(chr);
+            } else if ((chr == ' ' || chr == '-') && letters.length() > 0) {
+                if (ipa.length() > 0) {
+                    ipa.append(SPACE);
+                }
+                ipa.append(wordToIPA(letters.toString()));
+                letters.setLength(0);
+            }
+        }
+        return ipa.toString();
+    }
+
+    /**
+     * Estimates the pronunciation of a word or phrase from its spelling, without
+     * waiting for WordsAPI, e.g. to count its syllables.
+     *
+     * @param plaintext the word or phrase.
+     * @return the estimated pronunciation (for all parts of speech), or null if
+     *         none could be derived.
+     */
+    public static Pronunciation estimate(String plaintext) {
+        Pronunciation pronunciation = new Pronunciation();
+        return pronunciation.setIPA(plaintext, toIPA(plaintext)) ? pronunciation : null;
+    }
+
+    /**
+     * @param plaintext the word or phrase.
+     * @return the estimated syllables and emphasis of the word or phrase.
+     */
+    public static Pair<ArrayList<Syllable>, Emphasis> estimateSyllables(String plaintext) {
+        return IPAHandler.getSyllables(toIPA(plaintext));
+    }
+
+}
@@ -1,5 +1,7 @@
 package words;
 
+import java.text.Normalizer;
+import java.text.Normalizer.Form;
 import java.util.ArrayList;
 
 import config.Configuration;
@@ -26,10 +28,42 @@ public class IPAHandler extends AbstractIPA {
      * [Accessed 25 October 2021].
      * 
      * 
+     * The splitting itself is done by {@link words.IPASyllabifier}.
+     * 
      * @param ipaWord
      * @return a {@link utils.Pair} of an ArrayList of syllables and the emphases.
      */
     public static Pair<ArrayList<Syllable>, Emphasis> getSyllables(String ipaWord) {
+        ipaWord = addMissingEmphasis(ipaWord);
+
+        if (ipaWord.equals("")) {
+            Configuration.LOG.writeTempLog(
+                    String.format("getSyllables() passed an empty string \"%s\". Returning empty pair.", ipaWord));
+            return new Pair<>(new ArrayList<>(), new Emphasis());
+        }
+
+        Pair<ArrayList<Syllable>, Emphasis> pair = IPASyllabifier.syllabify(ipaWord);
+        if (pair.one().isEmpty()) {
+            Configuration.LOG.writePersistentLog(
+                    String.format("getSyllables() passed a string with no vowels \"%s\". Returning empty pair.",
+                            ipaWord));
+            return pair;
+        }
+
+        Configuration.LOG
+                .writeTempLog(String.format("getSyllables(\"%s\") returning: \"%s\"", ipaWord, pair.toString()));
+        return pair;
+    }
+
+    /**
+     * The original implementation of {@link #getSyllables(String)}, which searches
+     * the character arrays of {@link words.AbstractIPA} for every character. Kept
+     * as a reference to check {@link words.IPASyllabifier} against.
+     * 
+     * @param ipaWord
+     * @return a {@link utils.Pair} of an ArrayList of syllables and the emphases.
+     */
+    public static Pair<ArrayList<Syllable>, Emphasis> getSyllablesByScanning(String ipaWord) {
 
         ArrayList<Syllable> syllables = new ArrayList<>(); // included in return
         Emphasis emphasis = new Emphasis(); // included in return
@@ -154,6 +188,18 @@ public class IPAHandler extends AbstractIPA {
         return pair;
     }
 
+    /**
+     * Puts an IPA string into a canonical form, so that strings which would be
+     * parsed identically can be recognised as the same.
+     * 
+     * @param ipa an IPA string from WordsAPI.
+     * @return the IPA, trimmed, in Unicode NFC, and with variant spellings of
+     *         phonemes replaced (see {@link words.PhonemeCode#canonicalise}).
+     */
+    public static String canonicalise(String ipa) {
+        return PhonemeCode.canonicalise(Normalizer.normalize(ipa.trim(), Form.NFC));
+    }
+
     /**
      * Adds primary emphasis markers to monosyllablic words.
      * 
@@ -0,0 +1,228 @@
+package words;
+
+import java.util.ArrayList;
+
+import utils.Pair;
+
+/**
+ * This class splits IPA strings into syllables using precomputed lookup tables,
+ * rather than searching the character arrays of {@link words.AbstractIPA}.
+ *
+ * Characters are classified with a table indexed by character, diphthongs are
+ * looked up in a vowel-by-vowel matrix, and onsets are matched right to left by
+ * walking a trie of the reversed onsets. Nucleus and onset positions are kept
+ * in int arrays, so the only objects created are the returned syllables.
+ *
+ * The output is the same as {@link words.IPAHandler#getSyllablesByScanning}.
+ *
+ * @author 190021081
+ */
+public class IPASyllabifier extends AbstractIPA {
+
+    private static final char P_EMPHASIS = '\'';
+    private static final char S_EMPHASIS = ',';
+
+    // character classes
+    private static final byte OTHER = 0;
+    private static final byte VOWEL = 1;
+    private static final byte CONSONANT = 2;
+
+    // onset trie terminal flags
+    private static final byte ONSET = 1;
+    private static final byte U_ONSET = 2;
+
+    private static final byte[] charClass;
+    // 1-based index of each vowel in VOWELS, or 0
+    private static final byte[] vowelIndex;
+    // 1-based index of each character that appears in an onset, or 0
+    private static final byte[] onsetSymbol;
+    private static final boolean[][] diphthong;
+    // onsetTrie[state][symbol] is the next state (0 is both the root and "no transition")
+    private static final int[][] onsetTrie;
+    private static final byte[] onsetFlags;
+
+    static {
+        char max = (char) Math.max(P_EMPHASIS, S_EMPHASIS);
+        for (Character vowel : VOWELS) {
+            max = (char) Math.max(max, vowel);
+        }
+        for (Character consonant : CONSONANTS) {
+            max = (char) Math.max(max, consonant);
+        }
+        for (String[] onsets : new String[][] { ONSETS, U_ONSETS }) {
+            for (String onset : onsets) {
+                for (int i = 0; i < onset.length(); i++) {
+                    max = (char) Math.max(max, onset.charAt(i));
+                }
+            }
+        }
+
+        charClass = new byte[max + 1];
+        vowelIndex = new byte[max + 1];
+        onsetSymbol = new byte[max + 1];
+        for (Character consonant : CONSONANTS) {
+            charClass[consonant] = CONSONANT;
+        }
+        for (int i = 0; i < VOWELS.length; i++) {
+            charClass[VOWELS[i]] = VOWEL;
+            vowelIndex[VOWELS[i]] = (byte) (i + 1);
+        }
+
+        diphthong = new boolean[VOWELS.length + 1][VOWELS.length + 1];
+        for (String pair : DIPHTHONGS) {
+            diphthong[vowelIndexOf(pair.charAt(0))][vowelIndexOf(pair.charAt(1))] = true;
+        }
+
+        int symbols = 0;
+        int states = 1;
+        for (String[] onsets : new String[][] { ONSETS, U_ONSETS }) {
+            for (String onset : onsets) {
+                for (int i = 0; i < onset.length(); i++) {
+                    if (onsetSymbol[onset.charAt(i)] == 0) {
+                        onsetSymbol[onset.charAt(i)] = (byte) ++symbols;
+                    }
+                }
+                states += onset.length(); // an upper bound
+            }
+        }
+
+        int[][] trie = new int[states][symbols + 1];
+        byte[] flags = new byte[states];
+        int used = 1;
+        for (String[] onsets : new String[][] { ONSETS, U_ONSETS }) {
+            byte flag = onsets == ONSETS ? ONSET : U_ONSET;
+            for (String onset : onsets) {
+                int state = 0;
+                for (int i = onset.length() - 1; i >= 0; i--) {
+                    int symbol = onsetSymbol[onset.charAt(i)];
+                    if (trie[state][symbol] == 0) {
+                        trie[state][symbol] = used++;
+                    }
+                    state = trie[state][symbol];
+                }
+                flags[state] |= flag;
+            }
+        }
+        onsetTrie = trie;
+        onsetFlags = flags;
+    }
+
+    private static int vowelIndexOf(char chr) {
+        return chr < vowelIndex.length ? vowelIndex[chr] : 0;
+    }
+
+    private static boolean isVowelChar(char chr) {
+        return chr < charClass.length && charClass[chr] == VOWEL;
+    }
+
+    /*
+     * Returns the state reached by prepending chr to the onset so far, or -1 if
+     * the longer onset is not valid before the nucleus.
+     */
+    private static int extendOnset(int state, char chr, boolean uNucleus) {
+        if (chr >= onsetSymbol.length || onsetSymbol[chr] == 0) {
+            return -1;
+        }
+        int next = onsetTrie[state][onsetSymbol[chr]];
+        if (next == 0) {
+            return -1;
+        }
+        byte flags = onsetFlags[next];
+        if ((flags & ONSET) != 0 || (uNucleus && (flags & U_ONSET) != 0)) {
+            return next;
+        }
+        return -1;
+    }
+
+    /**
+     * Splits an IPA string into syllables. The string should already have had
+     * any multi-word spacing removed.
+     *
+     * @param ipaWord the IPA of a word.
+     * @return a {@link utils.Pair} of the syllables and the emphases; the list of
+     *         syllables is empty if the IPA has no vowels.
+     */
+    public static Pair<ArrayList<Syllable>, Emphasis> syllabify(String ipaWord) {
+        Emphasis emphasis = new Emphasis();
+        int length = ipaWord.length();
+
+        /* 1. locate all nuclei, joining adjacent vowels that form diphthongs */
+        int vowels = 0;
+        for (int i = 0; i < length; i++) {
+            if (isVowelChar(ipaWord.charAt(i))) {
+                vowels++;
+            }
+        }
+        if (vowels == 0) {
+            return new Pair<>(new ArrayList<>(), emphasis);
+        }
+
+        int[] nucleusStart = new int[vowels];
+        int[] nucleusEnd = new int[vowels];
+        int nuclei = 0;
+        for (int i = 0; i < length; i++) {
+            char chr = ipaWord.charAt(i);
+            if (!isVowelChar(chr)) {
+                continue;
+            }
+            int last = nuclei - 1;
+            if (last >= 0 && nucleusEnd[last] == i && nucleusStart[last] == i - 1
+                    && diphthong[vowelIndexOf(ipaWord.charAt(i - 1))][vowelIndexOf(chr)]) {
+                nucleusEnd[last] = i + 1;
+            } else {
+                nucleusStart[nuclei] = i;
+                nucleusEnd[nuclei] = i + 1;
+                nuclei++;
+            }
+        }
+
+        /*
+         * 2. for each nucleus, work backward through the longest valid onset; an
+         * emphasis marker ends the onset. onsetStart is where the onset begins,
+         * boundary is where the previous syllable's coda must end (-1 if there was
+         * nothing to stop it)
+         */
+        int[] onsetStart = new int[nuclei];
+        int[] boundary = new int[nuclei];
+        boolean foundPrimary = false;
+        for (int k = nuclei - 1; k >= 0; k--) {
+            boolean uNucleus = nucleusEnd[k] - nucleusStart[k] == 1
+                    && (ipaWord.charAt(nucleusStart[k]) == 'u' || ipaWord.charAt(nucleusStart[k]) == 'ʊ');
+            onsetStart[k] = nucleusStart[k];
+            boundary[k] = -1;
+            int state = 0;
+            int i = nucleusStart[k] - 1;
+            while (i >= 0) {
+                char prevChar = ipaWord.charAt(i);
+                int next = extendOnset(state, prevChar, uNucleus);
+                if (next >= 0) {
+                    state = next;
+                    onsetStart[k] = i;
+                    boundary[k] = i;
+                    i--;
+                    continue;
+                }
+                if (prevChar == P_EMPHASIS && !foundPrimary) {
+                    foundPrimary = true;
+                    emphasis.setPrimary(k);
+                    boundary[k] = i;
+                } else if (prevChar == S_EMPHASIS || prevChar == P_EMPHASIS) {
+                    emphasis.addSecondary(k);
+                    boundary[k] = i;
+                }
+                break;
+            }
+        }
+
+        /* 3. put remaining characters into codas */
+        ArrayList<Syllable> syllables = new ArrayList<>(nuclei);
+        for (int k = 0; k < nuclei; k++) {
+            int codaEnd = k == nuclei - 1 ? length : Math.max(nucleusEnd[k], boundary[k + 1]);
+            syllables.add(new Syllable(ipaWord.substring(onsetStart[k], nucleusStart[k]),
+                    ipaWord.substring(nucleusStart[k], nucleusEnd[k]),
+                    ipaWord.substring(nucleusEnd[k], codaEnd)));
+        }
+        return new Pair<>(syllables, emphasis);
+    }
+
+}
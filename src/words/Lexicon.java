@@ -0,0 +1,119 @@
+package words;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+import utils.BoundedCache;
+import utils.RoaringBitmap;
+
+/**
+ * This class is the lexicon of populated words, by ID (see
+ * {@link words.SuperWord#getId()}), and the constraints on suggestions
+ * materialised over it as bitmaps. A constraint is a check that depends only on
+ * a populated word, named by a key; the first time it is asked for, it is run
+ * over every populated word, and afterwards only over the words populated
+ * since. Checking a set of populated words against a constraint is then one
+ * bitmap intersection, however many words there are.
+ *
+ * Words are added as they are populated, unless WordsAPI has no entry for them
+ * and their pronunciation was only estimated. Constraints are kept in a bounded
+ * cache, so rarely used ones are dropped and rebuilt if asked for again.
+ *
+ * @author 190021081
+ */
+public abstract class Lexicon {
+
+    private static final int CONSTRAINT_CAPACITY = 256;
+
+    // the IDs of populated words, in the order they were populated; guarded by the class lock
+    private static int[] log = new int[1024];
+    private static int logSize = 0;
+    private static final RoaringBitmap populated = new RoaringBitmap();
+
+    /*
+     * The populated words that pass a check, as far through the log as it has
+     * been run.
+     */
+    private static final class Constraint {
+        private final RoaringBitmap passing = new RoaringBitmap();
+        private int covered = 0;
+    }
+
+    private static final BoundedCache<String, Constraint> constraints = new BoundedCache<>(CONSTRAINT_CAPACITY);
+
+    /**
+     * Adds a populated word. Does nothing if it is already there.
+     *
+     * @param word the word.
+     */
+    static synchronized void register(SuperWord word) {
+        if (populated.contains(word.getId())) {
+            return;
+        }
+        if (logSize == log.length) {
+            // a new array, so that earlier snapshots of the log stay valid
+            log = Arrays.copyOf(log, logSize * 2);
+        }
+        log[logSize++] = word.getId();
+        populated.add(word.getId());
+    }
+
+    /**
+     * @return the IDs of every populated word.
+     */
+    public static synchronized RoaringBitmap getPopulated() {
+        return populated.copy();
+    }
+
+    /**
+     * @param ids the IDs of some words.
+     * @return the IDs of those words that are not populated.
+     */
+    public static synchronized RoaringBitmap getUnpopulated(RoaringBitmap ids) {
+        return ids.andNot(populated);
+    }
+
+    /**
+     * @return the number of populated words.
+     */
+    public static synchronized int size() {
+        return logSize;
+    }
+
+    /**
+     * Checks populated words against a constraint, materialising it first over
+     * any words populated since it was last used.
+     *
+     * @param ids        the IDs of populated words.
+     * @param key        names the constraint; two constraints with the same key
+     *                   must always agree.
+     * @param constraint the check, for words not yet materialised.
+     * @return the IDs of the words that pass.
+     */
+    public static RoaringBitmap and(RoaringBitmap ids, String key, Predicate<SuperWord> constraint) {
+        int[] snapshot;
+        int end;
+        synchronized (Lexicon.class) {
+            snapshot = log;
+            end = logSize;
+        }
+        Constraint materialised = constraints.computeIfAbsent(key, k -> new Constraint());
+        synchronized (materialised) {
+            for (int i = materialised.covered; i < end; i++) {
+                if (constraint.test(SuperWord.getById(snapshot[i]))) {
+                    materialised.passing.add(snapshot[i]);
+                }
+            }
+            materialised.covered = Math.max(materialised.covered, end);
+            return ids.and(materialised.passing);
+        }
+    }
+
+    /**
+     * @return the size, hits and misses of the materialised constraints.
+     */
+    public static String getStatistics() {
+        return String.format("{words: %d, constraints: %s}", size(), constraints);
+    }
+
+}
@@ -0,0 +1,187 @@
+package words;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import utils.ParameterWrappers.SuggestionPoolParameters.SuggestionPool;
+import words_api.WordsAPI;
+
+import static config.Configuration.LOG;
+
+/**
+ * This class speculatively populates the neighbours (synonyms and similar to) of
+ * a word in the background, since those are nearly always the next words to be
+ * populated when the user asks for suggestions.
+ *
+ * Warming is off until a session is started, and a session has a budget of
+ * WordsAPI requests and of time spent warming; no more neighbours are queued
+ * than there are requests left, and once either is spent, those still queued
+ * are skipped. Warmed words that are later used as suggestions
+ * count as hits, so the hit rate shows whether the speculation pays for its
+ * quota.
+ *
+ * @author 190021081
+ */
+public class NeighbourWarmer {
+
+    // the pools that are usually asked for next
+    private static final EnumSet<SuggestionPool> WARMED_POOLS = EnumSet.of(SuggestionPool.SYNONYMS,
+            SuggestionPool.SIMILAR_TO);
+
+    // a single low priority thread, so that warming never competes much with the user
+    private static final ExecutorService warmer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "neighbour-warmer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private static volatile boolean enabled = false;
+    // read by the warmer thread, so written under the class lock but read without it
+    private static volatile int requestBudget;
+    private static volatile long timeBudgetNanos;
+
+    private static final AtomicInteger requestsUsed = new AtomicInteger();
+    // neighbours submitted to the warmer that have not run yet
+    private static final AtomicInteger queued = new AtomicInteger();
+    private static final AtomicLong nanosUsed = new AtomicLong();
+    // warmed words that have not been used yet
+    private static final Set<SuperWord> warmed = ConcurrentHashMap.newKeySet();
+    private static final AtomicInteger warmedCount = new AtomicInteger();
+    private static final AtomicInteger hitCount = new AtomicInteger();
+
+    private NeighbourWarmer() {
+    }
+
+    /**
+     * Enables warming with a fresh budget, resetting the statistics.
+     *
+     * @param maxRequests the most WordsAPI requests that may be spent warming.
+     * @param maxMillis   the most time (in milliseconds) that may be spent
+     *                    warming.
+     */
+    public static synchronized void startSession(int maxRequests, long maxMillis) {
+        requestBudget = maxRequests;
+        timeBudgetNanos = maxMillis * 1_000_000;
+        requestsUsed.set(0);
+        nanosUsed.set(0);
+        warmed.clear();
+        warmedCount.set(0);
+        hitCount.set(0);
+        enabled = true;
+    }
+
+    /**
+     * Disables warming. Neighbours that are already queued stay queued, but are
+     * skipped when they are reached.
+     */
+    public static void stopSession() {
+        enabled = false;
+    }
+
+    /**
+     * Queues the unpopulated neighbours of a populated word for warming, as many
+     * as there are requests left in the budget. Does nothing if warming is
+     * disabled or the budget is spent.
+     *
+     * @param superWord a word the user has just focused on.
+     */
+    public static void warmNeighbours(SuperWord superWord) {
+        if (!hasBudget()) {
+            return;
+        }
+
+        LinkedHashSet<SuperWord> neighbours = new LinkedHashSet<>();
+        for (PartOfSpeech pos : PartOfSpeech.values()) {
+            ArrayList<SubWord> subWords = superWord.getSubWords(pos, false);
+            if (subWords == null) {
+                continue;
+            }
+            for (SubWord subWord : subWords) {
+                for (SuggestionPool pool : WARMED_POOLS) {
+                    ArrayList<SuperWord> poolWords = subWord.getSuggestionPool(pool);
+                    if (poolWords != null) {
+                        neighbours.addAll(poolWords);
+                    }
+                }
+            }
+        }
+        neighbours.remove(superWord);
+
+        int submitted = 0;
+        for (SuperWord neighbour : neighbours) {
+            if (queued.get() >= requestBudget - requestsUsed.get()) {
+                break;
+            }
+            if (!neighbour.isPopulated()) {
+                queued.incrementAndGet();
+                warmer.submit(() -> {
+                    queued.decrementAndGet();
+                    warm(neighbour);
+                });
+                submitted++;
+            }
+        }
+        LOG.writeTempLog(String.format("Queued %d of %d neighbours of \"%s\" for warming", submitted,
+                neighbours.size(), superWord.getPlaintext()));
+    }
+
+    /*
+     * Populates a single neighbour, charging the session budget.
+     */
+    private static void warm(SuperWord neighbour) {
+        if (!hasBudget() || neighbour.isPopulated()) {
+            return;
+        }
+        boolean costsRequest = !WordsAPI.isCached(neighbour.getPlaintext());
+        long start = System.nanoTime();
+        neighbour.populate();
+        nanosUsed.addAndGet(System.nanoTime() - start);
+        if (costsRequest) {
+            requestsUsed.incrementAndGet();
+            warmed.add(neighbour);
+            warmedCount.incrementAndGet();
+        }
+    }
+
+    private static boolean hasBudget() {
+        return enabled && requestsUsed.get() < requestBudget && nanosUsed.get() < timeBudgetNanos;
+    }
+
+    /**
+     * Records that a word has been used as a suggestion. If it was warmed, this
+     * counts as a hit (once per word).
+     *
+     * @param superWord a suggestion about to be filtered.
+     */
+    public static void recordUse(SuperWord superWord) {
+        if (warmed.remove(superWord)) {
+            hitCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return the proportion of warmed words that were later used, or 0 if none
+     *         have been warmed.
+     */
+    public static double getHitRate() {
+        int count = warmedCount.get();
+        return count == 0 ? 0 : (double) hitCount.get() / count;
+    }
+
+    /**
+     * @return a summary of this session's warming, for logging.
+     */
+    public static String getReport() {
+        return String.format("warmed %d words (%d requests, %d ms), %d used: hit rate %.2f",
+                warmedCount.get(), requestsUsed.get(), nanosUsed.get() / 1_000_000, hitCount.get(), getHitRate());
+    }
+
+}
@@ -0,0 +1,140 @@
+package words;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class maps phonemes to small integer codes, so that pronunciations can be
+ * stored and compared as int arrays (see {@link words.CompactPronunciation}).
+ *
+ * A phoneme is a character together with any length marks or combining
+ * diacritics that follow it; the affricates "tʃ" and "dʒ" are single phonemes.
+ * Codes are assigned in order of first use and are only meaningful within one
+ * run of the program.
+ *
+ * @author 190021081
+ */
+public abstract class PhonemeCode {
+
+    /*
+     * Variant spellings of the same sound, e.g. WordsAPI has been seen to use both
+     * "ʧ" and "tʃ"
+     */
+    private static final String[][] VARIANTS = { { "ʧ", "tʃ" }, { "ʤ", "dʒ" }, { "ʦ", "ts" }, { "ʣ", "dz" },
+            { "g", "ɡ" }, { "ˈ", "'" }, { "ˌ", "," } };
+
+    private static final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    // the phoneme of each code, by code; guarded by codes
+    private static final ArrayList<String> phonemes = new ArrayList<>();
+
+    /**
+     * Replaces variant spellings of a sound with the spelling used by
+     * {@link words.AbstractIPA}.
+     *
+     * @param ipa an IPA string.
+     * @return the IPA with variants replaced.
+     */
+    public static String canonicalise(String ipa) {
+        for (String[] variant : VARIANTS) {
+            if (ipa.indexOf(variant[0]) >= 0) {
+                ipa = ipa.replace(variant[0], variant[1]);
+            }
+        }
+        return ipa;
+    }
+
+    /**
+     * @param phoneme a single phoneme.
+     * @return the phoneme's code, assigning a new one if it has not been seen.
+     */
+    public static int getCode(String phoneme) {
+        Integer code = codes.get(phoneme);
+        if (code != null) {
+            return code;
+        }
+        synchronized (codes) {
+            return codes.computeIfAbsent(phoneme, key -> {
+                phonemes.add(key);
+                return phonemes.size() - 1;
+            });
+        }
+    }
+
+    /**
+     * @param code a code returned by {@link #getCode(String)}.
+     * @return the phoneme with that code.
+     */
+    public static String getPhoneme(int code) {
+        synchronized (codes) {
+            return phonemes.get(code);
+        }
+    }
+
+    /**
+     * @param ipa part of an IPA string, e.g. an onset.
+     * @return the number of phonemes in the string.
+     */
+    public static int countPhonemes(String ipa) {
+        int count = 0;
+        for (int i = 0; i < ipa.length(); i = phonemeEnd(ipa, i)) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Writes the codes of the phonemes in a string into an array.
+     *
+     * @param ipa   part of an IPA string, e.g. an onset.
+     * @param codes the array to write to.
+     * @param start the index to write the first code to.
+     * @return the index after the last code written.
+     */
+    public static int encode(String ipa, int[] codes, int start) {
+        for (int i = 0; i < ipa.length();) {
+            int end = phonemeEnd(ipa, i);
+            codes[start++] = getCode(ipa.substring(i, end));
+            i = end;
+        }
+        return start;
+    }
+
+    /**
+     * @param ipa part of an IPA string, e.g. an onset.
+     * @return the first phoneme of the string, or "" if it is empty.
+     */
+    public static String firstPhoneme(String ipa) {
+        return ipa.isEmpty() ? "" : ipa.substring(0, phonemeEnd(ipa, 0));
+    }
+
+    /**
+     * @param ipa part of an IPA string, e.g. a coda.
+     * @return the last phoneme of the string, or "" if it is empty.
+     */
+    public static String lastPhoneme(String ipa) {
+        int start = 0;
+        for (int i = 0; i < ipa.length(); i = phonemeEnd(ipa, i)) {
+            start = i;
+        }
+        return ipa.substring(start);
+    }
+
+    /*
+     * Returns the index after the end of the phoneme that starts at i.
+     */
+    private static int phonemeEnd(String ipa, int i) {
+        char first = ipa.charAt(i++);
+        if (i < ipa.length() && ((first == 't' && ipa.charAt(i) == 'ʃ') || (first == 'd' && ipa.charAt(i) == 'ʒ'))) {
+            i++;
+        }
+        while (i < ipa.length() && isModifier(ipa.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isModifier(char chr) {
+        return chr == 'ː' || chr == 'ˑ' || Character.getType(chr) == Character.NON_SPACING_MARK;
+    }
+
+}
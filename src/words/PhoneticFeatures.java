@@ -0,0 +1,247 @@
+package words;
+
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class places phonemes in a space of articulatory features (place, manner
+ * and voicing for consonants; height, backness, rounding and length for
+ * vowels), so that similar sounds are close together. Distances are integers,
+ * and distances between rhymes (see {@link #rhymeDistance(int[], int[], int)})
+ * are a metric, so they can be indexed with a {@link utils.BKTree}.
+ *
+ * Phonemes are given as codes from {@link words.PhonemeCode}.
+ *
+ * @author 190021081
+ */
+public abstract class PhoneticFeatures {
+
+    // the distance between any vowel and any consonant, before their features
+    private static final int CLASS_DISTANCE = 8;
+    // the distance to or from a phoneme without known features
+    private static final int UNKNOWN_DISTANCE = 20;
+    // the cost of leaving a phoneme out of one rhyme
+    private static final int CONSONANT_INDEL = 3;
+    private static final int VOWEL_INDEL = 6;
+
+    /*
+     * Feature vectors: { is vowel, place, manner, voiced, height, backness,
+     * rounded, long }. Consonants have no vowel features, and vice versa, so the
+     * L1 distance between a vowel and a consonant is at least CLASS_DISTANCE.
+     */
+    private static final int VOWEL = 0;
+    private static final int PLACE = 1;
+    private static final int MANNER = 2;
+    private static final int VOICED = 3;
+    private static final int HEIGHT = 4;
+    private static final int BACKNESS = 5;
+    private static final int ROUNDED = 6;
+    private static final int LONG = 7;
+    private static final int FEATURE_COUNT = 8;
+    private static final int[] UNKNOWN = new int[0];
+
+    private static final HashMap<String, int[]> BASE_FEATURES = new HashMap<>();
+
+    static {
+        /* place: bilabial 0 ... glottal 10; manner: stop 0, affricate 1, fricative 2,
+         * nasal 3, trill or tap 4, approximant 5, lateral 6 */
+        consonants(0, 0, "p", "b");
+        consonants(0, 2, "ɸ", "β");
+        consonants(0, 3, null, "m");
+        consonants(0, 4, null, "ʙ");
+        consonants(1, 2, "f", "v");
+        consonants(1, 3, null, "ɱ");
+        consonants(1, 4, null, "ⱱ");
+        consonants(1, 5, null, "ʋ");
+        consonants(2, 2, "θ", "ð");
+        consonants(3, 0, "t", "d");
+        consonants(3, 2, "s", "z");
+        consonants(3, 2, "ɬ", "ɮ");
+        consonants(3, 3, null, "n");
+        consonants(3, 4, null, "r");
+        consonants(3, 4, null, "ɾ");
+        consonants(3, 5, null, "ɹ");
+        consonants(3, 6, null, "l");
+        consonants(4, 1, "tʃ", "dʒ");
+        consonants(4, 2, "ʃ", "ʒ");
+        consonants(5, 0, "ʈ", "ɖ");
+        consonants(5, 2, "ʂ", "ʐ");
+        consonants(5, 3, null, "ɳ");
+        consonants(5, 4, null, "ɽ");
+        consonants(5, 5, null, "ɻ");
+        consonants(5, 6, null, "ɭ");
+        consonants(6, 0, "c", "ɟ");
+        consonants(6, 2, "ç", "ʝ");
+        consonants(6, 3, null, "ɲ");
+        consonants(6, 5, null, "j");
+        consonants(6, 6, null, "ʎ");
+        consonants(7, 0, "k", "ɡ");
+        consonants(7, 2, "x", "ɣ");
+        consonants(7, 3, null, "ŋ");
+        consonants(7, 5, null, "ɰ");
+        consonants(7, 5, null, "w");
+        consonants(7, 6, null, "ʟ");
+        consonants(8, 0, "q", "ɢ");
+        consonants(8, 2, "χ", "ʁ");
+        consonants(8, 3, null, "ɴ");
+        consonants(8, 4, null, "ʀ");
+        consonants(9, 2, "ħ", "ʕ");
+        consonants(10, 0, "ʔ", null);
+        consonants(10, 2, "h", "ɦ");
+
+        /* height: close 0 ... open 6; backness: front 0, central 1, back 2 */
+        vowels(0, 0, "i", "y");
+        vowels(0, 1, "ɨ", "ʉ");
+        vowels(0, 2, "ɯ", "u");
+        vowels(1, 0, "ɪ", "ʏ");
+        vowels(1, 2, null, "ʊ");
+        vowels(2, 0, "e", "ø");
+        vowels(2, 1, "ɘ", "ɵ");
+        vowels(2, 2, "ɤ", "o");
+        vowels(3, 1, "ə", null);
+        vowels(4, 0, "ɛ", "œ");
+        vowels(4, 1, "ɜ", "ɞ");
+        vowels(4, 1, "ɝ", null);
+        vowels(4, 2, "ʌ", "ɔ");
+        vowels(5, 0, "æ", null);
+        vowels(5, 1, "ɐ", null);
+        vowels(6, 0, "a", "ɶ");
+        vowels(6, 1, "ä", null);
+        vowels(6, 2, "ɑ", "ɒ");
+    }
+
+    private static void consonants(int place, int manner, String voiceless, String voiced) {
+        if (voiceless != null) {
+            BASE_FEATURES.put(voiceless, features(0, place, manner, 0, 0, 0, 0));
+        }
+        if (voiced != null) {
+            BASE_FEATURES.put(voiced, features(0, place, manner, 1, 0, 0, 0));
+        }
+    }
+
+    private static void vowels(int height, int backness, String unrounded, String rounded) {
+        if (unrounded != null) {
+            BASE_FEATURES.put(unrounded, features(CLASS_DISTANCE, 0, 0, 0, height, backness, 0));
+        }
+        if (rounded != null) {
+            BASE_FEATURES.put(rounded, features(CLASS_DISTANCE, 0, 0, 0, height, backness, 1));
+        }
+    }
+
+    private static int[] features(int vowel, int place, int manner, int voiced, int height, int backness,
+            int rounded) {
+        int[] features = new int[FEATURE_COUNT];
+        features[VOWEL] = vowel;
+        features[PLACE] = place;
+        features[MANNER] = manner;
+        features[VOICED] = voiced;
+        features[HEIGHT] = height;
+        features[BACKNESS] = backness;
+        features[ROUNDED] = rounded;
+        return features;
+    }
+
+    // feature vectors by phoneme code
+    private static final ConcurrentHashMap<Integer, int[]> byCode = new ConcurrentHashMap<>();
+
+    /*
+     * Looks up the features of a phoneme, ignoring any diacritics other than
+     * length.
+     */
+    private static int[] getFeatures(int code) {
+        return byCode.computeIfAbsent(code, key -> {
+            String phoneme = PhonemeCode.getPhoneme(key);
+            String base = phoneme.length() > 1 && BASE_FEATURES.containsKey(phoneme.substring(0, 2))
+                    ? phoneme.substring(0, 2)
+                    : phoneme.substring(0, 1);
+            int[] features = BASE_FEATURES.get(base);
+            if (features == null) {
+                return UNKNOWN;
+            }
+            features = features.clone();
+            if (features[VOWEL] != 0 && (phoneme.indexOf('ː') >= 0 || phoneme.indexOf('ˑ') >= 0)) {
+                features[LONG] = 1;
+            }
+            return features;
+        });
+    }
+
+    /**
+     * @param code1 a phoneme code.
+     * @param code2 another phoneme code.
+     * @return the distance between the two phonemes; 0 iff they are the same,
+     *         and otherwise at least 1.
+     */
+    public static int distance(int code1, int code2) {
+        if (code1 == code2) {
+            return 0;
+        }
+        int[] features1 = getFeatures(code1);
+        int[] features2 = getFeatures(code2);
+        if (features1 == UNKNOWN || features2 == UNKNOWN) {
+            return UNKNOWN_DISTANCE;
+        }
+        int distance = 0;
+        for (int i = 0; i < FEATURE_COUNT; i++) {
+            distance += Math.abs(features1[i] - features2[i]);
+        }
+        return Math.max(1, distance);
+    }
+
+    /**
+     * @param code a phoneme code.
+     * @return the cost of inserting or deleting the phoneme.
+     */
+    public static int indelCost(int code) {
+        int[] features = getFeatures(code);
+        return features != UNKNOWN && features[VOWEL] == 0 ? CONSONANT_INDEL : VOWEL_INDEL;
+    }
+
+    /**
+     * Weighted edit distance between two sequences of phonemes, where
+     * substituting one phoneme for another costs their
+     * {@link #distance(int, int)}. Stops early once the distance must be more
+     * than the limit.
+     *
+     * @param rhyme1 phoneme codes, e.g. from a stressed nucleus to the end of a
+     *               word.
+     * @param rhyme2 other phoneme codes.
+     * @param limit  the greatest distance of interest.
+     * @return the distance, or limit + 1 if it is more than the limit.
+     */
+    public static int rhymeDistance(int[] rhyme1, int[] rhyme2, int limit) {
+        int[] previous = new int[rhyme2.length + 1];
+        int[] current = new int[rhyme2.length + 1];
+        for (int j = 1; j <= rhyme2.length; j++) {
+            previous[j] = previous[j - 1] + indelCost(rhyme2[j - 1]);
+        }
+
+        for (int i = 1; i <= rhyme1.length; i++) {
+            int deletion = indelCost(rhyme1[i - 1]);
+            current[0] = previous[0] + deletion;
+            int rowMin = current[0];
+            for (int j = 1; j <= rhyme2.length; j++) {
+                int substitution = previous[j - 1] + distance(rhyme1[i - 1], rhyme2[j - 1]);
+                int insertion = current[j - 1] + indelCost(rhyme2[j - 1]);
+                current[j] = Math.min(substitution, Math.min(previous[j] + deletion, insertion));
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > limit) {
+                return limit + 1;
+            }
+            int[] temp = previous;
+            previous = current;
+            current = temp;
+        }
+        return Math.min(previous[rhyme2.length], limit + 1);
+    }
+
+    /**
+     * As {@link #rhymeDistance(int[], int[], int)}, without a limit. This is a
+     * metric, for indexing rhymes.
+     */
+    public static int rhymeDistance(int[] rhyme1, int[] rhyme2) {
+        return rhymeDistance(rhyme1, rhyme2, Integer.MAX_VALUE - 1);
+    }
+
+}
@@ -178,6 +178,7 @@ public class Poem {
             builder.append(String.format("%sStanza %d", divider, stanzaIndex++));
             builder.append(String.format("%s- Desired rhyme scheme: %s", divider, stanza.getDesiredRhymeScheme()));
             builder.append(String.format("%s- Current rhyme scheme: %s", divider, stanza.getActualRhymeScheme()));
+            builder.append(String.format("%s- Internal rhymes: %s", divider, stanza.getInternalRhymes()));
             builder.append(divider);
             builder.append(stanza.toString());
         }
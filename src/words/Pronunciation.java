@@ -2,13 +2,17 @@ package words;
 
 import java.util.ArrayList;
 import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.json.JSONObject;
+import utils.BoundedCache;
 import utils.Pair;
 import utils.ParameterWrappers.FilterParameters.RhymeType;
 
 import static config.Configuration.LOG;
+import static config.Configuration.MAX_FORCED_RHYME_DISTANCE;
 
 /**
  * This class contains pronunciation data divided by part of speech. Has wrapper
@@ -33,12 +37,19 @@ public class Pronunciation {
         ArrayList<Syllable> primaryRhymeSubstring;
         ArrayList<ArrayList<Syllable>> secondaryRhymeSubstrings;
         Emphasis emphasis;
+        // the same pronunciation as phoneme codes, for allocation-free matching; null if too long
+        CompactPronunciation compact;
 
         public SubPronunciation(String ipa, ArrayList<Syllable> syllables, Emphasis emphasis) {
             this.ipa = ipa;
             this.syllables = syllables;
             this.emphasis = emphasis;
             this.populateRhymes();
+            this.compact = CompactPronunciation.build(syllables, emphasis);
+        }
+
+        public String getIPA() {
+            return ipa;
         }
 
         /**
@@ -78,6 +89,42 @@ public class Pronunciation {
 
         }
 
+        /*
+         * A string that is equal for two rhyme substrings iff they match, i.e. the
+         * syllables joined with a separator that never appears in IPA.
+         */
+        private static String rhymeKey(ArrayList<Syllable> rhyme) {
+            StringBuilder key = new StringBuilder();
+            for (Syllable syllable : rhyme) {
+                key.append(syllable.toString()).append('|');
+            }
+            return key.toString();
+        }
+
+        /**
+         * Two pronunciations perfectly rhyme iff they share a key, where it is the
+         * primary key of at least one of them.
+         * 
+         * @return the key of the rhyme from the primary stressed syllable.
+         */
+        public String getPrimaryRhymeKey() {
+            return rhymeKey(primaryRhymeSubstring);
+        }
+
+        /**
+         * @return the keys of the rhymes from each secondary stressed syllable, which
+         *         may be empty.
+         */
+        public ArrayList<String> getSecondaryRhymeKeys() {
+            ArrayList<String> keys = new ArrayList<>();
+            if (secondaryRhymeSubstrings != null) {
+                for (ArrayList<Syllable> secondary : secondaryRhymeSubstrings) {
+                    keys.add(rhymeKey(secondary));
+                }
+            }
+            return keys;
+        }
+
         private static boolean rhymeSubstringMatch(ArrayList<Syllable> rhyme1, ArrayList<Syllable> rhyme2) {
             if (rhyme1.size() != rhyme2.size()) {
                 return false;
@@ -91,13 +138,30 @@ public class Pronunciation {
         }
 
         /**
-         * Wrapper function for different types of rhyme recognition.
+         * Wrapper function for different types of rhyme recognition. Compares the
+         * {@link words.CompactPronunciation}s where both words have one.
          * 
          * @param rhyme the type of rhyme to match.
          * @param other to match against.
          * @return true iff the two subpronunciations rhyme.
          */
         public boolean matchesWith(RhymeType rhyme, SubPronunciation other) {
+            if (this.compact != null && other.compact != null) {
+                return this.compact.matchesWith(rhyme, other.compact);
+            }
+            return matchesWithSyllableLists(rhyme, other);
+        }
+
+        /**
+         * Rhyme recognition by comparing lists of {@link words.Syllable}s. Used for
+         * words too long to compact, and kept as a reference to check
+         * {@link words.CompactPronunciation} against.
+         * 
+         * @param rhyme the type of rhyme to match.
+         * @param other to match against.
+         * @return true iff the two subpronunciations rhyme.
+         */
+        public boolean matchesWithSyllableLists(RhymeType rhyme, SubPronunciation other) {
             switch (rhyme) {
                 case PERFECT_RHYME:
                     return perfectRhymesWith(other);
@@ -241,16 +305,61 @@ public class Pronunciation {
             return false;
         }
 
+        /*
+         * The phoneme codes of a rhyme substring.
+         */
+        private static int[] getRhymeCodes(ArrayList<Syllable> rhyme) {
+            ArrayList<String> parts = new ArrayList<>();
+            int length = 0;
+            for (Syllable syllable : rhyme) {
+                for (String part : new String[] { syllable.getOnset(), syllable.getNucleus(), syllable.getCoda() }) {
+                    parts.add(part);
+                    length += PhonemeCode.countPhonemes(part);
+                }
+            }
+            int[] codes = new int[length];
+            int next = 0;
+            for (String part : parts) {
+                next = PhonemeCode.encode(part, codes, next);
+            }
+            return codes;
+        }
+
+        private static boolean withinForcedDistance(ArrayList<Syllable> rhyme1, ArrayList<Syllable> rhyme2) {
+            return PhoneticFeatures.rhymeDistance(getRhymeCodes(rhyme1), getRhymeCodes(rhyme2),
+                    MAX_FORCED_RHYME_DISTANCE) <= MAX_FORCED_RHYME_DISTANCE;
+        }
+
         private boolean forcedRhymesWith(SubPronunciation other) {
-            // TODO this
+            /* near but not exact, so not also a perfect rhyme */
+            if (perfectRhymesWith(other)) {
+                return false;
+            }
+
             /* primary to primary */
+            if (withinForcedDistance(this.primaryRhymeSubstring, other.primaryRhymeSubstring)) {
+                return true;
+            }
 
             /* primary to secondary */
+            if (other.secondaryRhymeSubstrings != null) {
+                for (ArrayList<Syllable> secondary : other.secondaryRhymeSubstrings) {
+                    if (withinForcedDistance(this.primaryRhymeSubstring, secondary)) {
+                        return true;
+                    }
+                }
+            }
 
             /* secondary to primary */
+            if (this.secondaryRhymeSubstrings != null) {
+                for (ArrayList<Syllable> secondary : this.secondaryRhymeSubstrings) {
+                    if (withinForcedDistance(secondary, other.primaryRhymeSubstring)) {
+                        return true;
+                    }
+                }
+            }
 
             return false;
-
         }
 
         /**
@@ -275,9 +384,35 @@ public class Pronunciation {
         }
     }
 
+    // SubPronunciations are never changed once built, so one is shared by every word with the same IPA
+    private static final int PARSED_CAPACITY = 20_000;
+    private static final BoundedCache<String, SubPronunciation> parsed = new BoundedCache<>(PARSED_CAPACITY);
+
     private EnumMap<PartOfSpeech, SubPronunciation> subPronunciations = new EnumMap<>(PartOfSpeech.class);
     private SubPronunciation all;
 
+    /*
+     * Parses an IPA string, reusing the result of any earlier parse of the same
+     * (canonical) string. Returns null if the IPA was unparsable.
+     */
+    private static SubPronunciation parse(String ipa) {
+        return parsed.computeIfAbsent(IPAHandler.canonicalise(ipa), canonical -> {
+            Pair<ArrayList<Syllable>, Emphasis> syllablesAndEmphasis = IPAHandler.getSyllables(canonical);
+            if (syllablesAndEmphasis.one().isEmpty()) {
+                return null;
+            }
+            return new SubPronunciation(canonical, syllablesAndEmphasis.one(), syllablesAndEmphasis.two());
+        });
+    }
+
+    /**
+     * @return the size and hit rate of the memo of parsed IPA strings, for
+     *         logging.
+     */
+    public static String getParseStatistics() {
+        return parsed.toString();
+    }
+
     /**
      * Attempts to determine the syllable count for a word.
      * 
@@ -365,15 +500,14 @@ public class Pronunciation {
      *         false.
      */
     public boolean setIPA(String plaintext, JSONObject pronunciationObject) {
-        Pair<ArrayList<Syllable>, Emphasis> syllablesAndEmphasis = null;
+        boolean recognised = false;
         SubPronunciation sub;
 
         for (PartOfSpeech pos : PartOfSpeech.values()) {
             if (pronunciationObject.has(pos.getApiString())) {
-                String ipa = pronunciationObject.getString(pos.getApiString());
-                syllablesAndEmphasis = IPAHandler.getSyllables(ipa);
-                if (!syllablesAndEmphasis.one().isEmpty()) {
-                    sub = new SubPronunciation(ipa, syllablesAndEmphasis.one(), syllablesAndEmphasis.two());
+                recognised = true;
+                sub = parse(pronunciationObject.getString(pos.getApiString()));
+                if (sub != null) {
                     subPronunciations.put(pos, sub);
                 } // else IPA was unparsable
             }
@@ -382,14 +516,14 @@ public class Pronunciation {
         if (pronunciationObject.has("all")) {
             // "present" is a noun, verb and adjective, with pronunications for "noun",
             // "verb" and "all": "all" is useful even when other fields are filled
-            String ipa = pronunciationObject.getString("all");
-            syllablesAndEmphasis = IPAHandler.getSyllables(ipa);
-            if (!syllablesAndEmphasis.one().isEmpty()) {
-                this.all = new SubPronunciation(ipa, syllablesAndEmphasis.one(), syllablesAndEmphasis.two());
+            recognised = true;
+            sub = parse(pronunciationObject.getString("all"));
+            if (sub != null) {
+                this.all = sub;
             } // else IPA was unparsable
         }
 
-        if (syllablesAndEmphasis == null) {
+        if (!recognised) {
             /* i.e. pronunciation object had no (recognised) keys */
             LOG.writePersistentLog(String.format("Pronunciation of \"%s\" had no recognised keys: %s", plaintext,
                     pronunciationObject.toString()));
@@ -403,9 +537,9 @@ public class Pronunciation {
             LOG.writePersistentLog(String.format("Pronunciation of \"%s\" was an empty string", plaintext));
             return false;
         } else {
-            Pair<ArrayList<Syllable>, Emphasis> syllablesAndEmphasis = IPAHandler.getSyllables(allIpa);
-            if (!syllablesAndEmphasis.one().isEmpty()) {
-                this.all = new SubPronunciation(allIpa, syllablesAndEmphasis.one(), syllablesAndEmphasis.two());
+            SubPronunciation sub = parse(allIpa);
+            if (sub != null) {
+                this.all = sub;
                 return true;
             } else {
                 return false; // IPA was unparsable
@@ -438,6 +572,25 @@ public class Pronunciation {
         return requested;
     }
 
+    /**
+     * Groups the parts of speech by the SubPronunciation that
+     * {@link #getSubPronunciation} would give for them, so that each distinct
+     * pronunciation is only dealt with once.
+     * 
+     * @return each distinct SubPronunciation, with the parts of speech that use
+     *         it.
+     */
+    public LinkedHashMap<SubPronunciation, EnumSet<PartOfSpeech>> getDistinctSubPronunciations() {
+        LinkedHashMap<SubPronunciation, EnumSet<PartOfSpeech>> distinct = new LinkedHashMap<>();
+        for (PartOfSpeech pos : PartOfSpeech.values()) {
+            SubPronunciation sub = subPronunciations.get(pos) != null ? subPronunciations.get(pos) : all;
+            if (sub != null) {
+                distinct.computeIfAbsent(sub, key -> EnumSet.noneOf(PartOfSpeech.class)).add(pos);
+            }
+        }
+        return distinct;
+    }
+
     /**
      * {@inheritDoc}
      */
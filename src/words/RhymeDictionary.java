@@ -0,0 +1,289 @@
+package words;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import utils.Pair;
+import utils.ParameterWrappers.FilterParameters.RhymeType;
+import words.Pronunciation.SubPronunciation;
+
+import static config.Configuration.LOG;
+
+/**
+ * This class is a reverse rhyming dictionary over every populated word, i.e. it
+ * answers "what rhymes with this word" rather than "do these two words rhyme".
+ * Words WordsAPI has no entry for, with pronunciations only estimated from their
+ * spelling, are left out, as they are likely typos.
+ *
+ * Pronunciations are stored in a trie of syllables, read from the end of the
+ * word, so words that end in the same syllables share a path. Each node records
+ * the words whose rhyme starts from the next syllable back, by the rime (nucleus
+ * and coda) of that syllable and whether it is stressed. A query walks the path
+ * of the query word's rhyme and reads off the words there.
+ *
+ * @author 190021081
+ */
+public abstract class RhymeDictionary {
+
+    /*
+     * The stress of the syllable a rhyme starts on, as flags; a syllable can have
+     * both primary and secondary stress
+     */
+    private static final int PRIMARY = 1;
+    private static final int SECONDARY = 2;
+    private static final int UNSTRESSED = 4;
+    private static final int STRESSED = PRIMARY | SECONDARY;
+    private static final int ANY = PRIMARY | SECONDARY | UNSTRESSED;
+
+    private static class Entry {
+        private final SuperWord word;
+        private final EnumSet<PartOfSpeech> partsOfSpeech;
+        private final int syllableCount;
+        private final int stress;
+
+        private Entry(SuperWord word, EnumSet<PartOfSpeech> partsOfSpeech, int syllableCount, int stress) {
+            this.word = word;
+            this.partsOfSpeech = partsOfSpeech;
+            this.syllableCount = syllableCount;
+            this.stress = stress;
+        }
+    }
+
+    private static class Node {
+        // keyed by whole syllables, walking back from the end of the word
+        private HashMap<String, Node> children;
+        // keyed by the rime of the syllable that starts the rhyme
+        private HashMap<String, ArrayList<Entry>> rhymes;
+        // words whose last syllable is the path to this node
+        private ArrayList<Entry> lastSyllables;
+    }
+
+    private static final Node root = new Node();
+    private static int size = 0;
+
+    private static String rime(Syllable syllable) {
+        return syllable.getNucleus() + syllable.getCoda();
+    }
+
+    private static int getStress(Emphasis emphasis, int syllable) {
+        int stress = 0;
+        if (syllable == emphasis.getPrimary()) {
+            stress |= PRIMARY;
+        }
+        if (emphasis.getSecondary() != null && emphasis.getSecondary().contains(syllable)) {
+            stress |= SECONDARY;
+        }
+        return stress == 0 ? UNSTRESSED : stress;
+    }
+
+    /**
+     * Adds each distinct pronunciation of a populated word to the dictionary, and
+     * to the index of forced rhymes (see {@link ForcedRhymeIndex}). Public so that
+     * pronunciations not from WordsAPI can be added, e.g. to test queries.
+     *
+     * @param word          the word.
+     * @param pronunciation the word's pronunciation; words without one are not
+     *                      added.
+     */
+    public static synchronized void add(SuperWord word, Pronunciation pronunciation) {
+        if (pronunciation == null) {
+            return;
+        }
+        ForcedRhymeIndex.register(word, pronunciation);
+        for (Map.Entry<SubPronunciation, EnumSet<PartOfSpeech>> entry : pronunciation.getDistinctSubPronunciations()
+                .entrySet()) {
+            ArrayList<Syllable> syllables = entry.getKey().syllables;
+            Emphasis emphasis = entry.getKey().emphasis;
+            int count = syllables.size();
+
+            Node node = root;
+            for (int s = count - 1; s >= 0; s--) {
+                Syllable syllable = syllables.get(s);
+                Entry rhyme = new Entry(word, entry.getValue(), count, getStress(emphasis, s));
+                if (node.rhymes == null) {
+                    node.rhymes = new HashMap<>();
+                }
+                node.rhymes.computeIfAbsent(rime(syllable), key -> new ArrayList<>()).add(rhyme);
+
+                if (node.children == null) {
+                    node.children = new HashMap<>();
+                }
+                node = node.children.computeIfAbsent(syllable.toString(), key -> new Node());
+                if (s == count - 1) {
+                    if (node.lastSyllables == null) {
+                        node.lastSyllables = new ArrayList<>();
+                    }
+                    node.lastSyllables.add(rhyme);
+                }
+            }
+        }
+        size++;
+    }
+
+    /**
+     * @return the number of words in the dictionary.
+     */
+    public static synchronized int size() {
+        return size;
+    }
+
+    /*
+     * Follows the whole syllables after syllable s back from the end of the word.
+     * Returns null if no other word shares them.
+     */
+    private static Node walk(ArrayList<Syllable> syllables, int s) {
+        Node node = root;
+        for (int i = syllables.size() - 1; i > s && node != null; i--) {
+            node = node.children == null ? null : node.children.get(syllables.get(i).toString());
+        }
+        return node;
+    }
+
+    /*
+     * Adds the words that rhyme from syllable s of the query, where their rhyme
+     * starts on a syllable with any of the stress flags.
+     */
+    private static void collect(ArrayList<Syllable> syllables, int s, int stress, int syllableCount,
+            PartOfSpeech pos, HashMap<SuperWord, Integer> found) {
+        Node node = walk(syllables, s);
+        if (node == null || node.rhymes == null) {
+            return;
+        }
+        ArrayList<Entry> entries = node.rhymes.get(rime(syllables.get(s)));
+        if (entries != null) {
+            addAll(entries, stress, syllableCount, pos, syllables.size() - s, found);
+        }
+    }
+
+    private static void addAll(List<Entry> entries, int stress, int syllableCount, PartOfSpeech pos,
+            int rhymeLength, HashMap<SuperWord, Integer> found) {
+        for (Entry entry : entries) {
+            if ((entry.stress & stress) != 0 && (syllableCount <= 0 || entry.syllableCount == syllableCount)
+                    && (pos == null || entry.partsOfSpeech.contains(pos))) {
+                found.merge(entry.word, rhymeLength, Math::max);
+            }
+        }
+    }
+
+    /**
+     * Finds every word in the dictionary that rhymes with a word, for any of the
+     * word's pronunciations.
+     *
+     * @param word          the word to rhyme with; it is populated if need be.
+     * @param rhymeType     the type of rhyme.
+     * @param syllableCount only return words with this many syllables; 0 for any.
+     * @param pos           only return words with this part of speech; null for
+     *                      any.
+     * @return pairs of (word, rhyme length in syllables), longest rhymes first and
+     *         then alphabetically. Does not include the word itself.
+     */
+    public static ArrayList<Pair<SuperWord, Integer>> query(SuperWord word, RhymeType rhymeType,
+            int syllableCount, PartOfSpeech pos) {
+        // populate (which may take a request) before locking the dictionary
+        return query(word.getPronunciation(), word, rhymeType, syllableCount, pos);
+    }
+
+    /**
+     * As {@link #query(SuperWord, RhymeType, int, PartOfSpeech)}, but for any
+     * pronunciation.
+     *
+     * @param pronunciation the pronunciation to rhyme with.
+     * @param self          the word to leave out of the results; may be null.
+     * @param rhymeType     the type of rhyme.
+     * @param syllableCount only return words with this many syllables; 0 for any.
+     * @param pos           only return words with this part of speech; null for
+     *                      any.
+     * @return pairs of (word, rhyme length in syllables), longest rhymes first and
+     *         then alphabetically.
+     */
+    public static ArrayList<Pair<SuperWord, Integer>> query(Pronunciation pronunciation, SuperWord self,
+            RhymeType rhymeType, int syllableCount, PartOfSpeech pos) {
+        HashMap<SuperWord, Integer> found = new HashMap<>();
+        if (pronunciation != null) {
+            synchronized (RhymeDictionary.class) {
+                for (SubPronunciation sub : pronunciation.getDistinctSubPronunciations().keySet()) {
+                    collect(sub, rhymeType, syllableCount, pos, found);
+                }
+            }
+        }
+        found.remove(self);
+
+        ArrayList<Pair<SuperWord, Integer>> results = new ArrayList<>();
+        for (Map.Entry<SuperWord, Integer> entry : found.entrySet()) {
+            results.add(new Pair<>(entry.getKey(), entry.getValue()));
+        }
+        results.sort((p1, p2) -> p1.two().equals(p2.two()) ? p1.one().getPlaintext().compareTo(p2.one().getPlaintext())
+                : p2.two() - p1.two());
+        return results;
+    }
+
+    private static void collect(SubPronunciation sub, RhymeType rhymeType, int syllableCount, PartOfSpeech pos,
+            HashMap<SuperWord, Integer> found) {
+        ArrayList<Syllable> syllables = sub.syllables;
+        switch (rhymeType) {
+            case PERFECT_RHYME:
+                /* primary to primary or secondary, secondary to primary */
+                for (int s = 0; s < syllables.size(); s++) {
+                    int stress = getStress(sub.emphasis, s);
+                    if ((stress & PRIMARY) != 0) {
+                        collect(syllables, s, STRESSED, syllableCount, pos, found);
+                    }
+                    if ((stress & SECONDARY) != 0) {
+                        collect(syllables, s, PRIMARY, syllableCount, pos, found);
+                    }
+                }
+                break;
+            case SYLLABIC_RHYME:
+                /* last to last; includes onset */
+                Node node = walk(syllables, syllables.size() - 2);
+                if (node != null && node.lastSyllables != null) {
+                    addAll(node.lastSyllables, ANY, syllableCount, pos, 1, found);
+                }
+                break;
+            case IMPERFECT_RHYME:
+                /* stressed to unstressed, unstressed to stressed, secondary to secondary */
+                for (int s = 0; s < syllables.size(); s++) {
+                    int stress = getStress(sub.emphasis, s);
+                    if (stress == UNSTRESSED) {
+                        collect(syllables, s, STRESSED, syllableCount, pos, found);
+                    } else {
+                        collect(syllables, s, (stress & SECONDARY) != 0 ? UNSTRESSED | SECONDARY : UNSTRESSED,
+                                syllableCount, pos, found);
+                    }
+                }
+                break;
+            case WEAK_RHYME:
+                /* unstressed to unstressed */
+                for (int s = 0; s < syllables.size(); s++) {
+                    if (getStress(sub.emphasis, s) == UNSTRESSED) {
+                        collect(syllables, s, UNSTRESSED, syllableCount, pos, found);
+                    }
+                }
+                break;
+            case FORCED_RHYME:
+                /* near rhymes are found by distance, so are kept in their own index */
+                ForcedRhymeIndex.collect(sub, syllableCount, pos, found);
+                break;
+            default:
+                LOG.writeTempLog("Rhyming dictionary does not support RhymeType: " + rhymeType.name());
+                break;
+        }
+    }
+
+    /**
+     * @param results  the results of a query.
+     * @param page     the page to get, starting from 0.
+     * @param pageSize the number of results per page.
+     * @return the results on that page, which is empty if there are not that many
+     *         pages.
+     */
+    public static <T> List<T> getPage(List<T> results, int page, int pageSize) {
+        int from = Math.min(page * pageSize, results.size());
+        int to = Math.min(from + pageSize, results.size());
+        return results.subList(from, to);
+    }
+
+}
@@ -0,0 +1,163 @@
+package words;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import words.Pronunciation.SubPronunciation;
+
+/**
+ * This class is an inverted index from rhyme keys (see
+ * {@link words.Pronunciation.SubPronunciation#getPrimaryRhymeKey()}) to the
+ * populated words that have them, and for which parts of speech. Words are
+ * added as they are populated.
+ *
+ * Two words perfectly rhyme iff they share a key that is primary for at least
+ * one of them, so a perfect rhyme check is a few hash lookups rather than a
+ * comparison of every pair of pronunciations, and "which known words rhyme with
+ * this one" needs no scan.
+ *
+ * @author 190021081
+ */
+public abstract class RhymeIndex {
+
+    /*
+     * The keys of one word, and the parts of speech with each key. Never changed
+     * once the word is registered.
+     */
+    private static class WordKeys {
+        private final Map<String, EnumSet<PartOfSpeech>> primary = new HashMap<>();
+        private final Map<String, EnumSet<PartOfSpeech>> secondary = new HashMap<>();
+    }
+
+    private static final ConcurrentHashMap<String, Map<SuperWord, EnumSet<PartOfSpeech>>> primaryIndex = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Map<SuperWord, EnumSet<PartOfSpeech>>> secondaryIndex = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<SuperWord, WordKeys> registered = new ConcurrentHashMap<>();
+
+    /**
+     * Adds a populated word to the index. Does nothing if it is already there.
+     *
+     * @param word          the word.
+     * @param pronunciation the word's pronunciation; words without one are not
+     *                      indexed.
+     */
+    static void register(SuperWord word, Pronunciation pronunciation) {
+        if (pronunciation == null || registered.containsKey(word)) {
+            return;
+        }
+
+        WordKeys keys = new WordKeys();
+        for (Map.Entry<SubPronunciation, EnumSet<PartOfSpeech>> entry : pronunciation.getDistinctSubPronunciations()
+                .entrySet()) {
+            SubPronunciation sub = entry.getKey();
+            keys.primary.computeIfAbsent(sub.getPrimaryRhymeKey(), key -> EnumSet.noneOf(PartOfSpeech.class))
+                    .addAll(entry.getValue());
+            for (String key : sub.getSecondaryRhymeKeys()) {
+                keys.secondary.computeIfAbsent(key, k -> EnumSet.noneOf(PartOfSpeech.class)).addAll(entry.getValue());
+            }
+        }
+
+        if (registered.putIfAbsent(word, keys) == null) {
+            addAll(primaryIndex, word, keys.primary);
+            addAll(secondaryIndex, word, keys.secondary);
+        }
+    }
+
+    private static void addAll(ConcurrentHashMap<String, Map<SuperWord, EnumSet<PartOfSpeech>>> index,
+            SuperWord word, Map<String, EnumSet<PartOfSpeech>> keys) {
+        for (Map.Entry<String, EnumSet<PartOfSpeech>> entry : keys.entrySet()) {
+            index.computeIfAbsent(entry.getKey(), key -> new ConcurrentHashMap<>()).put(word, entry.getValue());
+        }
+    }
+
+    /**
+     * @param word a word.
+     * @return true if the word has been populated and has a pronunciation.
+     */
+    public static boolean isRegistered(SuperWord word) {
+        return registered.containsKey(word);
+    }
+
+    /*
+     * True if the word has the key in the index for any of the parts of speech.
+     */
+    private static boolean hasKey(ConcurrentHashMap<String, Map<SuperWord, EnumSet<PartOfSpeech>>> index,
+            String key, SuperWord word, Set<PartOfSpeech> partsOfSpeech) {
+        Map<SuperWord, EnumSet<PartOfSpeech>> words = index.get(key);
+        EnumSet<PartOfSpeech> wordPoS = words == null ? null : words.get(word);
+        return wordPoS != null && overlaps(wordPoS, partsOfSpeech);
+    }
+
+    private static boolean overlaps(EnumSet<PartOfSpeech> set, Set<PartOfSpeech> partsOfSpeech) {
+        for (PartOfSpeech pos : partsOfSpeech) {
+            if (set.contains(pos)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks for a perfect rhyme between two registered words, for any pairing
+     * of the given parts of speech. The same as comparing the pronunciations that
+     * {@link words.Pronunciation#getSubPronunciation} gives for each pairing.
+     *
+     * @param word1 a registered word.
+     * @param pos1  the parts of speech of word1 to consider.
+     * @param word2 another registered word.
+     * @param pos2  the parts of speech of word2 to consider.
+     * @return true if the words perfectly rhyme; false if not, or if either word
+     *         is not registered.
+     */
+    public static boolean perfectlyRhymes(SuperWord word1, Set<PartOfSpeech> pos1, SuperWord word2,
+            Set<PartOfSpeech> pos2) {
+        WordKeys keys = registered.get(word1);
+        if (keys == null || !registered.containsKey(word2)) {
+            return false;
+        }
+
+        /* primary to primary or secondary */
+        for (Map.Entry<String, EnumSet<PartOfSpeech>> entry : keys.primary.entrySet()) {
+            if (overlaps(entry.getValue(), pos1) && (hasKey(primaryIndex, entry.getKey(), word2, pos2)
+                    || hasKey(secondaryIndex, entry.getKey(), word2, pos2))) {
+                return true;
+            }
+        }
+        /* secondary to primary */
+        for (Map.Entry<String, EnumSet<PartOfSpeech>> entry : keys.secondary.entrySet()) {
+            if (overlaps(entry.getValue(), pos1) && hasKey(primaryIndex, entry.getKey(), word2, pos2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds every registered word that perfectly rhymes with a word, for any part
+     * of speech.
+     *
+     * @param word a registered word.
+     * @return the rhyming words, excluding the word itself; empty if the word is
+     *         not registered.
+     */
+    public static Set<SuperWord> getPerfectRhymes(SuperWord word) {
+        Set<SuperWord> rhymes = new HashSet<>();
+        WordKeys keys = registered.get(word);
+        if (keys == null) {
+            return rhymes;
+        }
+        for (String key : keys.primary.keySet()) {
+            rhymes.addAll(primaryIndex.getOrDefault(key, Map.of()).keySet());
+            rhymes.addAll(secondaryIndex.getOrDefault(key, Map.of()).keySet());
+        }
+        for (String key : keys.secondary.keySet()) {
+            rhymes.addAll(primaryIndex.getOrDefault(key, Map.of()).keySet());
+        }
+        rhymes.remove(word);
+        return rhymes;
+    }
+
+}
@@ -0,0 +1,99 @@
+package words;
+
+import java.util.BitSet;
+import java.util.List;
+
+import utils.ParameterWrappers.FilterParameters.RhymeType;
+import words.Pronunciation.SubPronunciation;
+
+/**
+ * This class matches one word against many for a type of rhyme. The target's
+ * pronunciations are looked up once, rather than once per candidate, and each
+ * candidate is then compared over packed phoneme codes (see
+ * {@link words.CompactPronunciation}) in a single loop, with the results
+ * returned as a bitset.
+ *
+ * @author 190021081
+ */
+public final class RhymeMatcher {
+
+    private final RhymeType rhymeType;
+    private final SubPronunciation[] targets;
+
+    private RhymeMatcher(RhymeType rhymeType, List<SubPronunciation> targets) {
+        this.rhymeType = rhymeType;
+        this.targets = targets.toArray(new SubPronunciation[0]);
+    }
+
+    /**
+     * Prepares a word to be matched against, populating it first if needed.
+     *
+     * @param rhymeType the type of rhyme to match.
+     * @param target    the word to match against.
+     * @param pos       the part of speech of the target; if null, any of its
+     *                  pronunciations may match.
+     * @return the prepared matcher.
+     */
+    public static RhymeMatcher prepare(RhymeType rhymeType, SuperWord target, PartOfSpeech pos) {
+        target.getDistinctSubPronunciations(); // populates
+        return new RhymeMatcher(rhymeType, target.getRhymingPronunciations(pos));
+    }
+
+    /*
+     * True if the candidate rhymes with any target.
+     */
+    private boolean matches(SubPronunciation candidate) {
+        for (SubPronunciation target : targets) {
+            if (target.matchesWith(rhymeType, candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Matches the target against one candidate word, populating it first if
+     * needed.
+     *
+     * @param candidate the word to match.
+     * @param pos       the part of speech of the candidate; if null, any of its
+     *                  pronunciations may match.
+     * @return true if the candidate matches.
+     */
+    public boolean matches(SuperWord candidate, PartOfSpeech pos) {
+        candidate.getDistinctSubPronunciations(); // populates
+        for (SubPronunciation sub : candidate.getRhymingPronunciations(pos)) {
+            if (matches(sub)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Matches the target against every candidate word. Candidates are populated
+     * together first, if needed.
+     *
+     * @param candidates the words to match.
+     * @param pos        the part of speech of the candidates; if null, any of
+     *                   each candidate's pronunciations may match.
+     * @return bit i is set iff candidate i matches.
+     */
+    public BitSet matchAll(List<SuperWord> candidates, PartOfSpeech pos) {
+        BitSet matches = new BitSet(candidates.size());
+        if (targets.length == 0) {
+            return matches;
+        }
+        SuperWord.populateAll(candidates);
+        for (int i = 0; i < candidates.size(); i++) {
+            for (SubPronunciation candidate : candidates.get(i).getRhymingPronunciations(pos)) {
+                if (matches(candidate)) {
+                    matches.set(i);
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+
+}
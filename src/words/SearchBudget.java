@@ -0,0 +1,89 @@
+package words;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class bounds a suggestion search by a wall-clock deadline and a number
+ * of WordsAPI requests. The clock starts when the budget is made. Requests are
+ * charged before they are sent, so the budget is never overspent, and a
+ * search that runs out stops with what it has confirmed so far.
+ *
+ * @author 190021081
+ */
+public final class SearchBudget {
+
+    private final long deadline; // in System.nanoTime()
+    private final int maxRequests;
+    private final AtomicInteger requestsUsed = new AtomicInteger();
+
+    /**
+     * @param maxMillis   the most time (in milliseconds) the search may take.
+     * @param maxRequests the most WordsAPI requests the search may send.
+     */
+    public SearchBudget(long maxMillis, int maxRequests) {
+        long now = System.nanoTime();
+        long maxNanos = TimeUnit.MILLISECONDS.toNanos(maxMillis);
+        // saturate rather than overflow, for effectively unlimited budgets
+        this.deadline = maxNanos >= Long.MAX_VALUE - now ? Long.MAX_VALUE : now + maxNanos;
+        this.maxRequests = maxRequests;
+    }
+
+    /**
+     * @return a budget that never runs out.
+     */
+    public static SearchBudget unlimited() {
+        return new SearchBudget(Long.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return the time left (in nanoseconds) before the deadline, or 0 if it has
+     *         passed.
+     */
+    public long remainingNanos() {
+        if (deadline == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, deadline - System.nanoTime());
+    }
+
+    /**
+     * Charges a request, if there is one left and the deadline has not passed.
+     *
+     * @return true if the request may be sent.
+     */
+    public boolean tryCharge() {
+        if (remainingNanos() == 0) {
+            return false;
+        }
+        int used;
+        do {
+            used = requestsUsed.get();
+            if (used >= maxRequests) {
+                return false;
+            }
+        } while (!requestsUsed.compareAndSet(used, used + 1));
+        return true;
+    }
+
+    /**
+     * @return true if the deadline has passed or every request has been charged.
+     */
+    public boolean isSpent() {
+        return remainingNanos() == 0 || requestsUsed.get() >= maxRequests;
+    }
+
+    public int getRequestsUsed() {
+        return requestsUsed.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String toString() {
+        return String.format("{requests: %d of %s, time left: %s}", requestsUsed.get(),
+                maxRequests == Integer.MAX_VALUE ? "unlimited" : maxRequests,
+                deadline == Long.MAX_VALUE ? "unlimited" : TimeUnit.NANOSECONDS.toMillis(remainingNanos()) + "ms");
+    }
+
+}
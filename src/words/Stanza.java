@@ -1,11 +1,15 @@
 package words;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import exceptions.RhymeSchemeSizeException;
 import utils.ParameterWrappers.FilterParameters.RhymeType;
+import words.Pronunciation.SubPronunciation;
 
 import static config.Configuration.LOG;
 
@@ -15,10 +19,80 @@ import static config.Configuration.LOG;
  */
 public class Stanza {
 
+    /**
+     * Words of a stanza that perfectly rhyme on the same rhyme key (see
+     * {@link words.Pronunciation.SubPronunciation#getPrimaryRhymeKey()}), at
+     * least one of which is not at the end of its line.
+     *
+     * Every word rhymes with each word that has the key as its primary key, but
+     * two words that only have it as a secondary key need not rhyme with each
+     * other.
+     */
+    public static class RhymeGroup {
+        private final String key;
+        private final ArrayList<int[]> positions = new ArrayList<>(); // { line index, token index }
+        private final ArrayList<SuperWord> words = new ArrayList<>();
+        private final ArrayList<Boolean> primary = new ArrayList<>();
+        private boolean hasPrimary = false; // the key is primary for at least one word
+        private boolean internal = false; // at least one word is not at the end of its line
+
+        private RhymeGroup(String key) {
+            this.key = key;
+        }
+
+        private void add(int lineIndex, int tokenIndex, SuperWord word, boolean primary, boolean lineEnd) {
+            positions.add(new int[] { lineIndex, tokenIndex });
+            words.add(word);
+            this.primary.add(primary);
+            hasPrimary |= primary;
+            internal |= !lineEnd;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * @return the { line index, token index } of each word in the group, in
+         *         order.
+         */
+        public List<int[]> getPositions() {
+            return positions;
+        }
+
+        public List<SuperWord> getWords() {
+            return words;
+        }
+
+        /**
+         * @param index the index of a word in the group.
+         * @return true if the key is the word's primary key, false if only
+         *         secondary.
+         */
+        public boolean isPrimary(int index) {
+            return primary.get(index);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public String toString() {
+            StringBuilder builder = new StringBuilder("{");
+            for (int i = 0; i < words.size(); i++) {
+                builder.append(i == 0 ? "" : ", ");
+                builder.append(String.format("%s (line %d%s)", words.get(i).getPlaintext(), positions.get(i)[0] + 1,
+                        primary.get(i) ? "" : ", secondary"));
+            }
+            builder.append("}");
+            return builder.toString();
+        }
+    }
+
     private final int startLine; // the index of the first line of the stanza
     private ArrayList<ArrayList<Token>> lines = new ArrayList<>();
     private RhymeScheme desiredScheme;
     private RhymeScheme actualScheme;
+    private ArrayList<RhymeGroup> internalRhymes = new ArrayList<>();
 
     // construction methods
 
@@ -82,6 +156,13 @@ public class Stanza {
         return this.actualScheme;
     }
 
+    /**
+     * @return the internal rhymes found when the rhyme scheme was last evaluated.
+     */
+    public List<RhymeGroup> getInternalRhymes() {
+        return this.internalRhymes;
+    }
+
     public ArrayList<ArrayList<Token>> getLines() {
         return this.lines;
     }
@@ -138,11 +219,17 @@ public class Stanza {
     public void substituteWord(int lineIndex, int tokenIndex, SuperWord newWord) {
         ArrayList<Token> line = lines.get(lineIndex);
         SuperWord lastWord = getLastWord(lineIndex);
-        boolean updateRhymeScheme = lastWord != null && lastWord.equals(line.remove(tokenIndex));
+        Token oldWord = line.remove(tokenIndex);
+        boolean updateRhymeScheme = lastWord != null && lastWord.equals(oldWord);
         line.add(tokenIndex, newWord);
+        // suggestions that had to rhyme with the old word no longer apply
+        if (oldWord instanceof SuperWord)
+            SuggestionCache.invalidate((SuperWord) oldWord);
 
         if (updateRhymeScheme)
             evaluateRhymingScheme();
+        else
+            evaluateInternalRhymes();
 
     }
 
@@ -176,10 +263,14 @@ public class Stanza {
             line.remove(tokenIndex1); // i.e. separator
             line.remove(tokenIndex1); // i.e. token 2
             line.add(tokenIndex1, combined);
+            SuggestionCache.invalidate((SuperWord) token1);
+            SuggestionCache.invalidate((SuperWord) token2);
 
             boolean updateRhymeScheme = lastWord != null && lastWord.equals(token2);
             if (updateRhymeScheme)
                 evaluateRhymingScheme();
+            else
+                evaluateInternalRhymes();
             return true;
         } else {
             return false;
@@ -206,14 +297,19 @@ public class Stanza {
             LOG.writeTempLog(String.format("Splitting word %s", toSplit));
             SuperWord word1 = SuperWord.getSuperWord(toSplit.substring(0, toSplit.indexOf(separator)));
             SuperWord word2 = SuperWord.getSuperWord(toSplit.substring(toSplit.indexOf(separator) + 1));
-            boolean updateRhymeScheme = lastWord != null && lastWord.equals(line.remove(tokenIndex));
+            Token oldWord = line.remove(tokenIndex);
+            boolean updateRhymeScheme = lastWord != null && lastWord.equals(oldWord);
 
             line.add(tokenIndex, word2);
             line.add(tokenIndex, new Token(separator));
             line.add(tokenIndex, word1);
+            if (oldWord instanceof SuperWord)
+                SuggestionCache.invalidate((SuperWord) oldWord);
 
             if (updateRhymeScheme)
                 evaluateRhymingScheme();
+            else
+                evaluateInternalRhymes();
             return true;
         } else {
             return false;
@@ -235,7 +331,10 @@ public class Stanza {
     }
 
     /**
-     * Determines the current rhyming scheme of the poem, using perfect rhyme.
+     * Determines the current rhyming scheme of the poem, using perfect rhyme, and
+     * the internal rhymes of the stanza. Only line endings are populated (as they
+     * are compared); internal rhymes use the pronunciations of words not yet
+     * populated as estimated from their spelling.
      */
     public void evaluateRhymingScheme() {
         RhymeScheme scheme = new RhymeScheme(this.lineCount());
@@ -259,6 +358,54 @@ public class Stanza {
         }
 
         this.actualScheme = scheme;
-        LOG.writeTempLog(String.format("Stanza rhyme scheme analysed"));
+        evaluateInternalRhymes();
+        LOG.writeTempLog(String.format("Stanza rhyme scheme analysed, internal rhymes: %s", internalRhymes));
+    }
+
+    /*
+     * Puts every word in a bucket for each of its rhyme keys, in one pass, rather
+     * than comparing every pair of words. Two words perfectly rhyme
+     * iff they share a key that is primary for at least one of them, so each group
+     * is anchored on the words with the key as primary; the others are marked (see
+     * RhymeGroup.isPrimary). A word repeated is not a rhyme, and rhymes only
+     * between line endings are left to the rhyme scheme. Words that are not
+     * populated are keyed by their estimated pronunciation rather than looked up.
+     */
+    private void evaluateInternalRhymes() {
+        LinkedHashMap<String, RhymeGroup> buckets = new LinkedHashMap<>();
+        for (int lineIndex = 0; lineIndex < lines.size(); lineIndex++) {
+            ArrayList<Token> line = lines.get(lineIndex);
+            int lastWordIndex = line.size() - 1;
+            while (lastWordIndex >= 0 && !(line.get(lastWordIndex) instanceof SuperWord)) {
+                lastWordIndex--;
+            }
+            for (int tokenIndex = 0; tokenIndex < line.size(); tokenIndex++) {
+                if (!(line.get(tokenIndex) instanceof SuperWord)) {
+                    continue;
+                }
+                SuperWord word = (SuperWord) line.get(tokenIndex);
+
+                // each key once per word, primary if it is primary for any pronunciation
+                LinkedHashMap<String, Boolean> keys = new LinkedHashMap<>();
+                for (SubPronunciation sub : word.getPronunciationsWithoutLookup()) {
+                    keys.put(sub.getPrimaryRhymeKey(), true);
+                    for (String key : sub.getSecondaryRhymeKeys()) {
+                        keys.putIfAbsent(key, false);
+                    }
+                }
+                for (String key : keys.keySet()) {
+                    buckets.computeIfAbsent(key, RhymeGroup::new).add(lineIndex, tokenIndex, word, keys.get(key),
+                            tokenIndex == lastWordIndex);
+                }
+            }
+        }
+
+        ArrayList<RhymeGroup> groups = new ArrayList<>();
+        for (RhymeGroup group : buckets.values()) {
+            if (group.hasPrimary && group.internal && new HashSet<>(group.words).size() > 1) {
+                groups.add(group);
+            }
+        }
+        this.internalRhymes = groups;
     }
 }
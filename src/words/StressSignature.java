@@ -0,0 +1,89 @@
+package words;
+
+import words.Pronunciation.SubPronunciation;
+
+/**
+ * This class is the stress pattern of a word as a pair of bitmasks: bit
+ * i of stressed is set if syllable i has primary or secondary stress, and bit i
+ * of known is set if its stress is fixed. The one syllable of a monosyllabic
+ * word can be stressed or not depending on the line, so is never known.
+ *
+ * Patterns are limited to 64 syllables.
+ *
+ * @author 190021081
+ */
+public final class StressSignature {
+
+    public static final int MAX_SYLLABLES = Long.SIZE;
+
+    private final long stressed;
+    private final long known;
+    private final int length;
+
+    private StressSignature(long stressed, long known, int length) {
+        this.stressed = stressed;
+        this.known = known;
+        this.length = length;
+    }
+
+    private static long mask(int length) {
+        return length == Long.SIZE ? -1L : (1L << length) - 1;
+    }
+
+    /**
+     * @param sub a pronunciation.
+     * @return the stress pattern of the pronunciation, or null if it is too long
+     *         to compact.
+     */
+    public static StressSignature of(SubPronunciation sub) {
+        CompactPronunciation compact = sub.compact;
+        if (compact == null) {
+            return null;
+        }
+        int length = compact.getSyllableCount();
+        return new StressSignature(compact.getStressMask(), length == 1 ? 0 : mask(length), length);
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Checks that a pattern could take the place of this one without breaking the
+     * meter, i.e. it is the same length and no syllable whose stress is fixed in
+     * both has different stress.
+     *
+     * @param other the pattern of a replacement.
+     * @return true if the replacement keeps the meter.
+     */
+    public boolean admits(StressSignature other) {
+        return other.length == length && ((stressed ^ other.stressed) & known & other.known) == 0;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof StressSignature)) {
+            return false;
+        }
+        StressSignature o = (StressSignature) other;
+        return stressed == o.stressed && known == o.known && length == o.length;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(stressed) * 31 + Long.hashCode(known) * 17 + length;
+    }
+
+    /**
+     * {@inheritDoc} Stressed syllables are shown as "/", unstressed as "x", and
+     * either as "?".
+     */
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            builder.append((known >>> i & 1) == 0 ? '?' : (stressed >>> i & 1) == 0 ? 'x' : '/');
+        }
+        return builder.toString();
+    }
+
+}
@@ -6,7 +6,9 @@ import static utils.NullListOperations.addAllToNull;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -31,9 +33,11 @@ public class SubWord {
     private String definition; // not in use for GUI
     private PartOfSpeech partOfSpeech = PartOfSpeech.UNKNOWN;
     private EnumMap<SuggestionPool, ArrayList<SuperWord>> suggestionPools = new EnumMap<>(SuggestionPool.class);
+    // pools that are (or could be expanded to be) non-empty, set on construction
+    private EnumSet<SuggestionPool> availablePools = EnumSet.noneOf(SuggestionPool.class);
 
-    private boolean setCommonlyTyped = false;
-    private boolean setCommonCategories = false;
+    private volatile boolean setCommonlyTyped = false;
+    private volatile boolean setCommonCategories = false;
 
     @SuppressWarnings("unchecked")
     public SubWord(SuperWord parent, Map<String, Object> resultObject) {
@@ -59,39 +63,61 @@ public class SubWord {
             if (resultObject.containsKey(pool.getApiString())) {
                 List<Object> synonymsList = (List<Object>) resultObject.get(pool.getApiString());
                 suggestionPools.put(pool, SuperWord.batchPlaceHolders(synonymsList));
+                if (!synonymsList.isEmpty()) {
+                    availablePools.add(pool);
+                }
             }
         }
 
+        /* expanded pools are only worth offering if there is something to expand */
+        if (availablePools.contains(SuggestionPool.TYPE_OF)) {
+            availablePools.add(SuggestionPool.COMMONLY_TYPED);
+        }
+        if (availablePools.contains(SuggestionPool.IN_CATEGORY)) {
+            availablePools.add(SuggestionPool.COMMON_CATEGORIES);
+        }
+
     }
 
     // (internal) setters
 
-    private void setCommonlyTyped() {
+    private synchronized void setCommonlyTyped() {
         if (setCommonlyTyped || suggestionPools.get(SuggestionPool.TYPE_OF) == null)
             return;
 
-        ArrayList<SuperWord> commonlyTyped = new ArrayList<>();
-        for (SuperWord type : suggestionPools.get(SuggestionPool.TYPE_OF)) {
-            commonlyTyped = addAllToNull(commonlyTyped,
-                    type.getSuggestionPool(SuggestionPool.HAS_TYPES, this.partOfSpeech, false));
-        }
-        suggestionPools.put(SuggestionPool.COMMONLY_TYPED, commonlyTyped);
+        suggestionPools.put(SuggestionPool.COMMONLY_TYPED,
+                expandPool(SuggestionPool.TYPE_OF, SuggestionPool.HAS_TYPES));
         setCommonlyTyped = true;
     }
 
-    private void setCommonCategories() {
+    private synchronized void setCommonCategories() {
         if (setCommonCategories || suggestionPools.get(SuggestionPool.IN_CATEGORY) == null)
             return;
 
-        ArrayList<SuperWord> commonCategories = new ArrayList<>();
-        for (SuperWord category : suggestionPools.get(SuggestionPool.IN_CATEGORY)) {
-            commonCategories = addAllToNull(commonCategories,
-                    category.getSuggestionPool(SuggestionPool.HAS_CATEGORIES, this.partOfSpeech, false));
-        }
-        suggestionPools.put(SuggestionPool.COMMON_CATEGORIES, commonCategories);
+        suggestionPools.put(SuggestionPool.COMMON_CATEGORIES,
+                expandPool(SuggestionPool.IN_CATEGORY, SuggestionPool.HAS_CATEGORIES));
         setCommonCategories = true;
     }
 
+    /*
+     * Collects the words two hops away, e.g. the hyponyms of this word's
+     * hypernyms. The words one hop away are deduplicated and populated
+     * concurrently first, as populating them one by one is slow.
+     */
+    private ArrayList<SuperWord> expandPool(SuggestionPool source, SuggestionPool via) {
+        long start = System.currentTimeMillis();
+        LinkedHashSet<SuperWord> sourceWords = new LinkedHashSet<>(suggestionPools.get(source));
+        SuperWord.populateAll(sourceWords);
+
+        ArrayList<SuperWord> expanded = new ArrayList<>();
+        for (SuperWord sourceWord : sourceWords) {
+            expanded = addAllToNull(expanded, sourceWord.getSuggestionPool(via, this.partOfSpeech, false));
+        }
+        LOG.writeTempLog(String.format("Expanded %s of \"%s\" via %d words in %d ms", via, parent.getPlaintext(),
+                sourceWords.size(), System.currentTimeMillis() - start));
+        return expanded;
+    }
+
     private void setPartOfSpeech(String partOfSpeech) {
         if (partOfSpeech == null) {
             partOfSpeech = "null";
@@ -106,6 +132,50 @@ public class SubWord {
         return partOfSpeech;
     }
 
+    /**
+     * @param pool an expanded pool, e.g. {@link SuggestionPool#COMMONLY_TYPED}.
+     * @return the pool that it is expanded from, or null if the pool is not
+     *         expanded.
+     */
+    public static SuggestionPool getExpansionSource(SuggestionPool pool) {
+        switch (pool) {
+            case COMMONLY_TYPED:
+                return SuggestionPool.TYPE_OF;
+            case COMMON_CATEGORIES:
+                return SuggestionPool.IN_CATEGORY;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @param pool the desired pool.
+     * @return true if the pool is expanded and has already been expanded.
+     */
+    public boolean isExpanded(SuggestionPool pool) {
+        switch (pool) {
+            case COMMONLY_TYPED:
+                return setCommonlyTyped;
+            case COMMON_CATEGORIES:
+                return setCommonCategories;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Cheap check for whether a suggestion pool can be offered, which does not
+     * expand {@link SuggestionPool#COMMONLY_TYPED} or
+     * {@link SuggestionPool#COMMON_CATEGORIES}.
+     * 
+     * @param pool the desired pool.
+     * @return true if the pool is non-empty, or for expanded pools, if the pool
+     *         they are expanded from is non-empty.
+     */
+    public boolean hasSuggestionPool(SuggestionPool pool) {
+        return availablePools.contains(pool);
+    }
+
     /**
      * Returns the unfiltered contents of a given suggestion pool.
      * 
@@ -0,0 +1,168 @@
+package words;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import utils.BoundedCache;
+import utils.ParameterWrappers.FilterParameters;
+import utils.ParameterWrappers.FilterParameters.RhymeType;
+import utils.ParameterWrappers.SuggestionPoolParameters;
+import utils.ParameterWrappers.SuggestionPoolParameters.SuggestionPool;
+
+import static config.Configuration.LOG;
+
+/**
+ * This class caches suggestion searches, so that asking again for the
+ * suggestions of a word with the same parameters shows the results found so
+ * far at once, and carries on the same search if more are asked for.
+ *
+ * Searches are keyed by the values of their parameters rather than by the
+ * parameter objects, which the GUI builds afresh on every request. The words
+ * that suggestions are rhymed with are part of the key, so an entry is only
+ * ever hit while they are unchanged; {@link #invalidate(SuperWord)} drops the
+ * entries that depend on a word once it has been replaced.
+ *
+ * @author 190021081
+ */
+public abstract class SuggestionCache {
+
+    private static final int CAPACITY = 200;
+    private static final BoundedCache<Key, SuggestionSearch> searches = new BoundedCache<>(CAPACITY);
+
+    /**
+     * The parameters of a suggestion search, by value.
+     */
+    public static final class Key {
+        private final String word;
+        private final PartOfSpeech pos;
+        private final EnumSet<SuggestionPool> pools = EnumSet.noneOf(SuggestionPool.class);
+        private final boolean inclusiveUnknown;
+        // the plaintexts of the words to rhyme with, by rhyme type
+        private final EnumMap<RhymeType, List<String>> rhymeWith = new EnumMap<>(RhymeType.class);
+        private final PartOfSpeech matchPoS;
+        private final boolean syllableCountFilter;
+        private final int syllableTolerance;
+        private final StressSignature meter;
+        private final int hash;
+
+        private Key(SuperWord word, PartOfSpeech pos, SuggestionPoolParameters suggestionParams,
+                FilterParameters filterParams) {
+            this.word = word.getPlaintext();
+            this.pos = pos;
+            for (SuggestionPool pool : SuggestionPool.values()) {
+                if (suggestionParams.includes(pool)) {
+                    pools.add(pool);
+                }
+            }
+            this.inclusiveUnknown = suggestionParams.hasInclusiveUnknown();
+            for (RhymeType rhymeType : RhymeType.values()) {
+                List<SuperWord> matchWith = filterParams.getMatchWith(rhymeType);
+                if (matchWith != null) {
+                    List<String> plaintexts = new ArrayList<>();
+                    for (SuperWord other : matchWith) {
+                        plaintexts.add(other.getPlaintext());
+                    }
+                    rhymeWith.put(rhymeType, plaintexts);
+                }
+            }
+            this.matchPoS = filterParams.getMatchPoS();
+            this.syllableCountFilter = filterParams.syllableCountFilter();
+            this.syllableTolerance = filterParams.getSyllableTolerance();
+            this.meter = filterParams.getMeter();
+            // plaintexts and enums only, so the hash is the same from run to run
+            this.hash = Objects.hash(this.word, pos, pools, inclusiveUnknown, rhymeWith, matchPoS,
+                    syllableCountFilter, syllableTolerance, meter);
+        }
+
+        /**
+         * @param word a word.
+         * @return true if the search's suggestions must rhyme with the word.
+         */
+        public boolean dependsOn(SuperWord word) {
+            String plaintext = word.getPlaintext();
+            for (List<String> plaintexts : rhymeWith.values()) {
+                if (plaintexts.contains(plaintext)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key o = (Key) other;
+            return hash == o.hash && word.equals(o.word) && pos == o.pos && pools.equals(o.pools)
+                    && inclusiveUnknown == o.inclusiveUnknown && rhymeWith.equals(o.rhymeWith)
+                    && matchPoS == o.matchPoS && syllableCountFilter == o.syllableCountFilter
+                    && syllableTolerance == o.syllableTolerance && Objects.equals(meter, o.meter);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * @param word             the word to get suggestions for.
+     * @param pos              the part of speech of the word.
+     * @param suggestionParams which suggestion pools to draw from.
+     * @param filterParams     the filters suggestions must pass.
+     * @return the key of a search with these parameters.
+     */
+    public static Key key(SuperWord word, PartOfSpeech pos, SuggestionPoolParameters suggestionParams,
+            FilterParameters filterParams) {
+        return new Key(word, pos, suggestionParams, filterParams);
+    }
+
+    /**
+     * @param key the key of a search.
+     * @return the cached search, or null if there is none.
+     */
+    public static SuggestionSearch get(Key key) {
+        return searches.get(key);
+    }
+
+    /**
+     * Caches a search. Only searches that stopped because they had found enough,
+     * or run out of candidates, should be cached.
+     *
+     * @param key    the key of the search.
+     * @param search the search.
+     */
+    public static void put(Key key, SuggestionSearch search) {
+        searches.put(key, search);
+    }
+
+    /**
+     * Drops every search whose suggestions must rhyme with a word, since it has
+     * been replaced in the poem.
+     *
+     * @param word the replaced word.
+     */
+    public static void invalidate(SuperWord word) {
+        int before = searches.size();
+        searches.removeIf(key -> key.dependsOn(word));
+        int dropped = before - searches.size();
+        if (dropped > 0) {
+            LOG.writeTempLog(String.format("Dropped %d cached suggestion search(es) depending on \"%s\"", dropped,
+                    word.getPlaintext()));
+        }
+    }
+
+    /**
+     * @return the size, hits and misses of the cache.
+     */
+    public static String getStatistics() {
+        return searches.toString();
+    }
+
+}
@@ -0,0 +1,67 @@
+package words;
+
+/**
+ * This class is an event published while suggestions are being filtered (see
+ * {@link words.SuggestionSearch#next(int, java.util.concurrent.SubmissionPublisher)}):
+ * either a suggestion that has passed the filters, or progress through the
+ * candidates. Every event carries the progress so far.
+ *
+ * @author 190021081
+ */
+public final class SuggestionEvent {
+
+    private final SuperWord suggestion;
+    private final int checked;
+    private final int total;
+
+    private SuggestionEvent(SuperWord suggestion, int checked, int total) {
+        this.suggestion = suggestion;
+        this.checked = checked;
+        this.total = total;
+    }
+
+    static SuggestionEvent accepted(SuperWord suggestion, int checked, int total) {
+        return new SuggestionEvent(suggestion, checked, total);
+    }
+
+    static SuggestionEvent progress(int checked, int total) {
+        return new SuggestionEvent(null, checked, total);
+    }
+
+    /**
+     * @return true if this event only reports progress.
+     */
+    public boolean isProgress() {
+        return suggestion == null;
+    }
+
+    /**
+     * @return the suggestion that passed the filters, or null for progress
+     *         events.
+     */
+    public SuperWord getSuggestion() {
+        return suggestion;
+    }
+
+    /**
+     * @return the number of candidates checked so far.
+     */
+    public int getChecked() {
+        return checked;
+    }
+
+    /**
+     * @return the number of candidates to check.
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String toString() {
+        return String.format("%s(%d/%d)", isProgress() ? "progress" : suggestion.getPlaintext(), checked, total);
+    }
+
+}
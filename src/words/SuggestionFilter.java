@@ -0,0 +1,371 @@
+package words;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+import utils.RoaringBitmap;
+import utils.ParameterWrappers.FilterParameters;
+import utils.ParameterWrappers.FilterParameters.RhymeType;
+
+import static config.Configuration.LOG;
+
+/**
+ * This class filters suggestions through a sequence of stages, each a check
+ * that a suggestion must pass, with an estimated cost and selectivity (the
+ * proportion of suggestions that pass it). Stages are run in order of cost per
+ * rejection, so cheap checks that reject a lot go first, and each suggestion
+ * stops at the first stage it fails.
+ *
+ * Stages that need a suggestion to be populated cost a WordsAPI request per
+ * unpopulated suggestion, so always come after the local stages. Before the
+ * first of them, every suggestion still in the running is populated at once,
+ * as far as the search's budget allows.
+ *
+ * Stages that depend only on the populated suggestion are named by a key, so
+ * that once every suggestion is populated they can be checked as bitmaps over
+ * the {@link words.Lexicon} instead.
+ *
+ * Selectivities start from fixed guesses, and are replaced by the observed
+ * proportions once enough suggestions have been checked, so later batches of
+ * a search can be reordered.
+ *
+ * @author 190021081
+ */
+public class SuggestionFilter {
+
+    // the cost of looking a suggestion up, relative to a local check
+    private static final double LOOKUP_COST = 1000;
+    // how many suggestions a stage must have checked before its observed selectivity is trusted
+    private static final int MIN_OBSERVATIONS = 20;
+
+    /**
+     * A check in the pipeline.
+     */
+    public abstract static class Stage {
+        private final String name;
+        private final double cost;
+        private final double priorSelectivity;
+        private final boolean needsLookup;
+        private final String key;
+        private int checked = 0;
+        private int passed = 0;
+
+        /**
+         * @param name             for logging.
+         * @param cost             the relative cost of checking one suggestion,
+         *                         not including looking it up.
+         * @param priorSelectivity the expected proportion of suggestions that pass.
+         * @param needsLookup      true if the check needs the suggestion to be
+         *                         populated.
+         */
+        protected Stage(String name, double cost, double priorSelectivity, boolean needsLookup) {
+            this(name, cost, priorSelectivity, needsLookup, null);
+        }
+
+        /**
+         * @param name             for logging.
+         * @param cost             the relative cost of checking one suggestion,
+         *                         not including looking it up.
+         * @param priorSelectivity the expected proportion of suggestions that pass.
+         * @param needsLookup      true if the check needs the suggestion to be
+         *                         populated.
+         * @param key              if the check depends only on the populated
+         *                         suggestion, a name for it in the
+         *                         {@link words.Lexicon}; otherwise null.
+         */
+        protected Stage(String name, double cost, double priorSelectivity, boolean needsLookup, String key) {
+            this.name = name;
+            this.cost = cost;
+            this.priorSelectivity = priorSelectivity;
+            this.needsLookup = needsLookup;
+            this.key = key;
+        }
+
+        /**
+         * @param suggestion a suggestion, populated if this stage needs a lookup.
+         * @return true if the suggestion passes.
+         */
+        protected abstract boolean test(SuperWord suggestion);
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean needsLookup() {
+            return needsLookup;
+        }
+
+        /**
+         * @return the proportion of suggestions that pass, as observed if enough
+         *         have been checked, and otherwise as expected.
+         */
+        public double getSelectivity() {
+            return checked < MIN_OBSERVATIONS ? priorSelectivity : (double) passed / checked;
+        }
+
+        /*
+         * The cost of this stage per suggestion it rejects; lower goes first.
+         */
+        private double getRank() {
+            return (cost + (needsLookup ? LOOKUP_COST : 0)) / Math.max(1e-3, 1 - getSelectivity());
+        }
+
+        /*
+         * Checks populated suggestions at once, against the lexicon.
+         */
+        private RoaringBitmap checkIndexed(RoaringBitmap ids) {
+            RoaringBitmap passing = Lexicon.and(ids, key, this::test);
+            checked += ids.cardinality();
+            passed += passing.cardinality();
+            return passing;
+        }
+
+        /**
+         * Checks several suggestions at once. By default, each is tested in turn;
+         * stages that can share work between suggestions override this.
+         *
+         * @param suggestions suggestions, populated if this stage needs a lookup.
+         * @return bit i is set iff suggestion i passes.
+         */
+        protected BitSet testAll(List<SuperWord> suggestions) {
+            BitSet passing = new BitSet(suggestions.size());
+            for (int i = 0; i < suggestions.size(); i++) {
+                if (test(suggestions.get(i))) {
+                    passing.set(i);
+                }
+            }
+            return passing;
+        }
+
+        private BitSet checkBatch(List<SuperWord> suggestions) {
+            BitSet passing = testAll(suggestions);
+            checked += suggestions.size();
+            passed += passing.cardinality();
+            return passing;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public String toString() {
+            return String.format("%s (rejected %d of %d)", name, checked - passed, checked);
+        }
+    }
+
+    private final ArrayList<Stage> stages = new ArrayList<>();
+    private List<Stage> lastOrder = new ArrayList<>();
+
+    /**
+     * Adds a stage; stages can be added in any order.
+     *
+     * @param stage the stage.
+     * @return this filter.
+     */
+    public SuggestionFilter add(Stage stage) {
+        stages.add(stage);
+        return this;
+    }
+
+    /**
+     * Builds the stages for suggestions to replace a word.
+     *
+     * @param word    the word being replaced.
+     * @param thisPos the part of speech of the word and its suggestions.
+     * @param params  the filters to apply.
+     * @return the filter.
+     */
+    public static SuggestionFilter plan(SuperWord word, PartOfSpeech thisPos, FilterParameters params) {
+        SuggestionFilter filter = new SuggestionFilter();
+
+        int targetSyllables = params.syllableCountFilter() ? word.getSyllableCount(thisPos)
+                : params.getMeter() != null ? params.getMeter().getLength() : 0;
+        int tolerance = params.getSyllableTolerance();
+        if (targetSyllables > 0 && tolerance >= 0) {
+            // populated words skip straight to the exact check
+            filter.add(new Stage("syllable estimate", 1, 0.5, false,
+                    String.format("syllable estimate %d~%d", targetSyllables, tolerance)) {
+                protected boolean test(SuperWord suggestion) {
+                    return SyllableEstimator.mayHaveSyllables(suggestion, targetSyllables, tolerance);
+                }
+            });
+        }
+
+        ArrayList<RhymeMatcher> matchers = new ArrayList<>();
+        StringBuilder rhymeKey = new StringBuilder("rhyme ").append(thisPos);
+        boolean targetsPopulated = true;
+        for (RhymeType rhymeType : RhymeType.values()) {
+            List<SuperWord> matchWithList = params.getMatchWith(rhymeType);
+            if (matchWithList != null) {
+                for (SuperWord matchWith : matchWithList) {
+                    matchers.add(RhymeMatcher.prepare(rhymeType, matchWith, params.getMatchPoS()));
+                    targetsPopulated &= matchWith.isPopulated();
+                    rhymeKey.append(String.format(" %s:%s:%s", rhymeType, matchWith.getPlaintext(),
+                            params.getMatchPoS()));
+                }
+            }
+        }
+        if (!matchers.isEmpty()) {
+            // a target whose lookup was cut short would otherwise be materialised as rhyming with nothing
+            filter.add(new Stage("rhyme", 2 * matchers.size(), 0.05, true,
+                    targetsPopulated ? rhymeKey.toString() : null) {
+                protected boolean test(SuperWord suggestion) {
+                    for (RhymeMatcher matcher : matchers) {
+                        if (matcher.matches(suggestion, thisPos)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+
+                // one pass per matcher over the whole batch
+                protected BitSet testAll(List<SuperWord> suggestions) {
+                    BitSet passing = new BitSet(suggestions.size());
+                    for (RhymeMatcher matcher : matchers) {
+                        passing.or(matcher.matchAll(suggestions, thisPos));
+                    }
+                    return passing;
+                }
+            });
+        }
+
+        if (params.syllableCountFilter()) {
+            filter.add(new Stage("syllable count", 1, 0.3, true, "syllable count " + targetSyllables) {
+                protected boolean test(SuperWord suggestion) {
+                    return suggestion.getSyllableCount(null) == targetSyllables;
+                }
+            });
+        }
+
+        if (params.getMeter() != null) {
+            StressSignature meter = params.getMeter();
+            filter.add(new Stage("meter", 2, 0.3, true, String.format("meter %s %s", meter, thisPos)) {
+                protected boolean test(SuperWord suggestion) {
+                    return suggestion.keepsMeter(meter, thisPos);
+                }
+            });
+        }
+        return filter;
+    }
+
+    /**
+     * @return the stages, in the order they will next be run.
+     */
+    public List<Stage> getOrder() {
+        ArrayList<Stage> order = new ArrayList<>(stages);
+        order.sort(Comparator.comparingDouble(Stage::getRank));
+        return order;
+    }
+
+    /**
+     * Filters suggestions, keeping their order.
+     *
+     * @param suggestions the suggestions.
+     * @return the suggestions that pass every stage.
+     */
+    public ArrayList<SuperWord> filter(List<SuperWord> suggestions) {
+        return filter(suggestions, SearchBudget.unlimited(), new ArrayList<>());
+    }
+
+    /**
+     * Filters suggestions, keeping their order, within a budget. Suggestions
+     * that could not be looked up within it are neither passed nor rejected, but
+     * set aside to be filtered again later.
+     *
+     * @param suggestions the suggestions.
+     * @param budget      the time and requests that lookups may spend.
+     * @param unchecked   where to add the suggestions set aside, in order.
+     * @return the suggestions that pass every stage.
+     */
+    public ArrayList<SuperWord> filter(List<SuperWord> suggestions, SearchBudget budget,
+            List<SuperWord> unchecked) {
+        List<Stage> order = getOrder();
+        if (!order.equals(lastOrder)) {
+            LOG.writeTempLog("Filter order: " + order);
+        }
+        lastOrder = order;
+
+        BitSet alive = new BitSet(suggestions.size());
+        alive.set(0, suggestions.size());
+        boolean lookedUp = false;
+        for (Stage stage : order) {
+            if (stage.needsLookup() && !lookedUp) {
+                // look up every remaining suggestion at once, rather than one by one
+                ArrayList<SuperWord> survivors = new ArrayList<>(alive.cardinality());
+                for (int i = alive.nextSetBit(0); i >= 0; i = alive.nextSetBit(i + 1)) {
+                    survivors.add(suggestions.get(i));
+                }
+                SuperWord.populateAll(survivors, budget);
+                for (int i = alive.nextSetBit(0); i >= 0; i = alive.nextSetBit(i + 1)) {
+                    if (!suggestions.get(i).isPopulated()) {
+                        unchecked.add(suggestions.get(i));
+                        alive.clear(i);
+                    }
+                }
+                lookedUp = true;
+            }
+            int[] indices = alive.stream().toArray();
+            ArrayList<SuperWord> survivors = new ArrayList<>(indices.length);
+            for (int i : indices) {
+                survivors.add(suggestions.get(i));
+            }
+            BitSet passing = stage.checkBatch(survivors);
+            for (int j = 0; j < indices.length; j++) {
+                if (!passing.get(j)) {
+                    alive.clear(indices[j]);
+                }
+            }
+        }
+
+        ArrayList<SuperWord> filtered = new ArrayList<>(alive.cardinality());
+        for (int i = alive.nextSetBit(0); i >= 0; i = alive.nextSetBit(i + 1)) {
+            filtered.add(suggestions.get(i));
+        }
+        return filtered;
+    }
+
+    /**
+     * @return true if every stage can be checked against the lexicon, so that
+     *         populated suggestions can be filtered with
+     *         {@link #filterIndexed(RoaringBitmap)}.
+     */
+    public boolean isIndexed() {
+        for (Stage stage : stages) {
+            if (stage.key == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Filters populated suggestions as a set, by intersecting the bitmaps of the
+     * stages' constraints (see {@link words.Lexicon}), rather than checking them
+     * one by one. Only valid if {@link #isIndexed()}.
+     *
+     * @param ids the IDs of the suggestions, which must all be populated.
+     * @return the IDs of the suggestions that pass every stage.
+     */
+    public RoaringBitmap filterIndexed(RoaringBitmap ids) {
+        List<Stage> order = getOrder();
+        lastOrder = order;
+        RoaringBitmap alive = ids;
+        for (Stage stage : order) {
+            if (alive.isEmpty()) {
+                break;
+            }
+            alive = stage.checkIndexed(alive);
+        }
+        return alive;
+    }
+
+    /**
+     * @return each stage and the number of suggestions it has rejected, in the
+     *         order they were last run.
+     */
+    public String getReport() {
+        return lastOrder.toString();
+    }
+
+}
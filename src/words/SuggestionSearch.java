@@ -0,0 +1,283 @@
+package words;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.SubmissionPublisher;
+
+import utils.RankedQueue;
+import utils.RoaringBitmap;
+import utils.ParameterWrappers.FilterParameters;
+
+import static config.Configuration.LOG;
+import static config.Configuration.MAX_CONCURRENT_REQUESTS;
+
+/**
+ * This class is a search for suggestions to replace a word, which can be
+ * resumed. Candidates are checked in rank order (the number of suggestion
+ * pools they appear in), a batch at a time, and the search stops as soon as
+ * enough have passed the filters. Asking for more carries on from the next
+ * unchecked candidate.
+ *
+ * Each call can be bounded by a {@link words.SearchBudget}. Once it runs out
+ * (or the thread is interrupted), the call returns what has been confirmed so
+ * far and the result is flagged as partial; candidates whose lookups were cut
+ * short are checked first next time.
+ *
+ * Once every candidate left is populated, and every filter can be checked
+ * against the {@link words.Lexicon}, the rest are filtered at once as bitmaps,
+ * with no per-candidate checks.
+ *
+ * Only one thread searches at a time, so a search whose task has been
+ * cancelled can safely be resumed by another. The suggestions returned, and
+ * whether there are more, can be read while a search is running (e.g. on the
+ * FX thread); they are as of the last call that finished.
+ *
+ * @author 190021081
+ */
+public class SuggestionSearch {
+
+    // how many candidates are checked at a time, enough to keep every request slot busy
+    public static final int BATCH_SIZE = 2 * MAX_CONCURRENT_REQUESTS;
+
+    private final SuperWord word;
+    private final PartOfSpeech thisPos;
+    private final FilterParameters params;
+    private final RankedQueue<SuperWord> candidates;
+    // the IDs of the candidates still queued
+    private final RoaringBitmap queued = new RoaringBitmap();
+    private final SuggestionFilter filter;
+    // candidates that passed in the last batch, beyond the limit asked for
+    private final ArrayDeque<SuperWord> surplus = new ArrayDeque<>();
+    // candidates that could not be looked up within the last budget, in rank order
+    private final ArrayDeque<SuperWord> unchecked = new ArrayDeque<>();
+    // every suggestion returned so far, in order; replaced rather than added to
+    private volatile List<SuperWord> returned = Collections.emptyList();
+    private final int total;
+    private int checked = 0;
+    // as of the last call to next, so they can be read without the lock
+    private volatile boolean partial = false;
+    private volatile boolean more;
+
+    /**
+     * Usually made by
+     * {@link words.SuperWord#searchSuggestions(PartOfSpeech, utils.ParameterWrappers.SuggestionPoolParameters, FilterParameters)};
+     * public so that a search can be run over any candidates, e.g. to test it.
+     *
+     * @param word       the word being replaced.
+     * @param thisPos    the part of speech of the word and its suggestions.
+     * @param params     the filters suggestions must pass.
+     * @param candidates the unfiltered suggestions, in rank order.
+     */
+    public SuggestionSearch(SuperWord word, PartOfSpeech thisPos, FilterParameters params,
+            RankedQueue<SuperWord> candidates) {
+        this.word = word;
+        this.thisPos = thisPos;
+        this.params = params;
+        this.candidates = candidates;
+        this.filter = SuggestionFilter.plan(word, thisPos, params);
+        this.total = candidates.size();
+        this.more = !candidates.isEmpty();
+        for (SuperWord candidate : candidates.elements()) {
+            queued.add(candidate.getId());
+        }
+    }
+
+    /**
+     * @return true if there are candidates that have passed but not been
+     *         returned, or that have not been checked, as of the last call to
+     *         next.
+     */
+    public boolean hasMore() {
+        return more;
+    }
+
+    /**
+     * @return true if the last call to next stopped short of its limit because
+     *         its budget ran out or it was interrupted, rather than because the
+     *         candidates ran out.
+     */
+    public boolean isPartial() {
+        return partial;
+    }
+
+    /**
+     * @return the number of candidates checked so far.
+     */
+    public synchronized int getChecked() {
+        return checked;
+    }
+
+    /**
+     * @return every suggestion returned so far, in order.
+     */
+    public ArrayList<SuperWord> getReturned() {
+        return new ArrayList<>(returned);
+    }
+
+    /**
+     * @return the number of candidates.
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Finds the next suggestions that pass the filters.
+     *
+     * @param limit the most suggestions to find.
+     * @return up to limit suggestions, in rank order; fewer only if the
+     *         candidates run out.
+     */
+    public ArrayList<SuperWord> next(int limit) {
+        return next(limit, null);
+    }
+
+    /**
+     * As {@link #next(int)}, but also publishes each suggestion as soon as it has
+     * passed the filters, along with progress through the candidates. Publishing
+     * blocks while a subscriber's buffer is full.
+     *
+     * The publisher is closed once the search stops (or exceptionally, if
+     * filtering fails), so subscribers should subscribe before this is called.
+     * If the calling thread is interrupted, the search stops after the current
+     * batch.
+     *
+     * @param limit     the most suggestions to find.
+     * @param publisher where to publish suggestions and progress; if null,
+     *                  nothing is published and unlimited searches are checked
+     *                  in one batch.
+     * @return up to limit suggestions, in rank order.
+     */
+    public ArrayList<SuperWord> next(int limit, SubmissionPublisher<SuggestionEvent> publisher) {
+        return next(limit, SearchBudget.unlimited(), publisher);
+    }
+
+    /**
+     * As {@link #next(int, SubmissionPublisher)}, but stops once the budget runs
+     * out, cancelling the lookups in flight, and returns the suggestions
+     * confirmed so far. See {@link #isPartial()}.
+     *
+     * @param limit     the most suggestions to find.
+     * @param budget    the time and requests that may be spent.
+     * @param publisher where to publish suggestions and progress; may be null.
+     * @return up to limit suggestions, in rank order.
+     */
+    public synchronized ArrayList<SuperWord> next(int limit, SearchBudget budget,
+            SubmissionPublisher<SuggestionEvent> publisher) {
+        try {
+            ArrayList<SuperWord> found = new ArrayList<>();
+            while (found.size() < limit && !surplus.isEmpty()) {
+                accept(surplus.poll(), found, publisher);
+            }
+
+            boolean unbounded = publisher == null && limit == Integer.MAX_VALUE;
+            boolean stopped = false;
+            while (found.size() < limit && (!unchecked.isEmpty() || !candidates.isEmpty())) {
+                if (Thread.currentThread().isInterrupted()) {
+                    LOG.writeTempLog(String.format("Suggestion search for \"%s\" was interrupted", word.getPlaintext()));
+                    stopped = true;
+                    break;
+                }
+                if (budget.isSpent()) {
+                    LOG.writeTempLog(String.format("Suggestion search for \"%s\" ran out of budget: %s",
+                            word.getPlaintext(), budget));
+                    stopped = true;
+                    break;
+                }
+                if (unchecked.isEmpty() && filter.isIndexed() && Lexicon.getUnpopulated(queued).isEmpty()) {
+                    nextIndexed(limit, found, publisher);
+                    break;
+                }
+                // candidates set aside last time outrank those still queued
+                int batchSize = unbounded ? unchecked.size() + candidates.size() : BATCH_SIZE;
+                List<SuperWord> batch = new ArrayList<>(Math.min(batchSize, unchecked.size() + candidates.size()));
+                while (batch.size() < batchSize && !unchecked.isEmpty()) {
+                    batch.add(unchecked.poll());
+                }
+                for (SuperWord suggestion : candidates.poll(batchSize - batch.size())) {
+                    queued.remove(suggestion.getId());
+                    batch.add(suggestion);
+                }
+                for (SuperWord suggestion : batch) {
+                    NeighbourWarmer.recordUse(suggestion);
+                }
+                ArrayList<SuperWord> setAside = new ArrayList<>();
+                for (SuperWord suggestion : filter.filter(batch, budget, setAside)) {
+                    if (found.size() < limit) {
+                        accept(suggestion, found, publisher);
+                    } else {
+                        surplus.add(suggestion);
+                    }
+                }
+                checked += batch.size() - setAside.size();
+                unchecked.addAll(setAside);
+                if (publisher != null) {
+                    publisher.submit(SuggestionEvent.progress(checked, total));
+                }
+                if (!setAside.isEmpty() && !budget.isSpent() && !Thread.currentThread().isInterrupted()) {
+                    // lookups failed within budget, so retrying at once would likely fail again
+                    LOG.writeTempLog(String.format("Suggestion search for \"%s\" could not look up %s",
+                            word.getPlaintext(), setAside));
+                    stopped = true;
+                    break;
+                }
+            }
+
+            LOG.writeTempLog(String.format(
+                    "Filtered suggestions for \"%s\" (%s) including %s, %d of %d checked%s: %s",
+                    word.getPlaintext(), thisPos, params.toString(), checked, total, stopped ? " (partial)" : "",
+                    found));
+            LOG.writeTempLog("Filter stages: " + filter.getReport());
+            LOG.writeTempLog("Neighbour warming: " + NeighbourWarmer.getReport());
+            LOG.writeTempLog("Rhyme cache: " + SuperWord.getRhymeCacheStatistics());
+            partial = stopped;
+            more = !surplus.isEmpty() || !unchecked.isEmpty() || !candidates.isEmpty();
+            ArrayList<SuperWord> all = new ArrayList<>(returned);
+            all.addAll(found);
+            returned = Collections.unmodifiableList(all);
+            if (publisher != null) {
+                publisher.close();
+            }
+            return found;
+        } catch (RuntimeException e) {
+            if (publisher != null) {
+                publisher.closeExceptionally(e);
+            }
+            throw e;
+        }
+    }
+
+    /*
+     * Every candidate left is populated, so they are filtered all at once as a
+     * set, then taken in rank order until enough have passed.
+     */
+    private void nextIndexed(int limit, ArrayList<SuperWord> found, SubmissionPublisher<SuggestionEvent> publisher) {
+        long start = System.nanoTime();
+        RoaringBitmap passing = filter.filterIndexed(queued);
+        while (found.size() < limit && !candidates.isEmpty()) {
+            SuperWord suggestion = candidates.poll();
+            queued.remove(suggestion.getId());
+            checked++;
+            NeighbourWarmer.recordUse(suggestion);
+            if (passing.contains(suggestion.getId())) {
+                accept(suggestion, found, publisher);
+            }
+        }
+        if (publisher != null) {
+            publisher.submit(SuggestionEvent.progress(checked, total));
+        }
+        LOG.writeTempLog(String.format("Suggestion search for \"%s\" was answered from the lexicon in %dus: %s",
+                word.getPlaintext(), (System.nanoTime() - start) / 1000, Lexicon.getStatistics()));
+    }
+
+    private void accept(SuperWord suggestion, ArrayList<SuperWord> found,
+            SubmissionPublisher<SuggestionEvent> publisher) {
+        found.add(suggestion);
+        if (publisher != null) {
+            publisher.submit(SuggestionEvent.accepted(suggestion, checked, total));
+        }
+    }
+
+}
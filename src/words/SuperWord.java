@@ -4,12 +4,25 @@ import java.text.Normalizer;
 import java.text.Normalizer.Form;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumMap;
-import java.util.HashMap;
+import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -20,37 +33,77 @@ import utils.ParameterWrappers.SuggestionPoolParameters;
 import utils.ParameterWrappers.FilterParameters.RhymeType;
 import utils.ParameterWrappers.SuggestionPoolParameters.SuggestionPool;
 import words.Pronunciation.SubPronunciation;
+import utils.BKTree;
+import utils.BoundedCache;
+import utils.Pair;
+import utils.RankedQueue;
 import words_api.WordsAPI;
 
 import static utils.NullListOperations.addToNull;
 import static utils.NullListOperations.addAllToNull;
 import static utils.NullListOperations.combineLists;
 import static utils.NullListOperations.combineListsVarags;
-import static utils.NullListOperations.combineListsPrioritiseDuplicates;
 import static config.Configuration.LOG;
+import static config.Configuration.MAX_CONCURRENT_REQUESTS;
 
 /**
  * This class encodes a super word, defined as a plaintext spelling,
  * pronunciation data, and collection of {@link words.SubWord}s. Keeps a cache
  * of created SuperWords to prevent duplicate WordsAPI queries.
+ * 
+ * SuperWords can be populated from multiple threads: there is only ever one
+ * SuperWord per plaintext, and populating it is synchronised.
  */
 public class SuperWord extends Token {
 
-    private static HashMap<String, SuperWord> cachePopulated = new HashMap<>();
-    private static HashMap<String, SuperWord> cachePlaceholder = new HashMap<>();
+    private static ConcurrentHashMap<String, SuperWord> cachePopulated = new ConcurrentHashMap<>();
+    private static ConcurrentHashMap<String, SuperWord> cachePlaceholder = new ConcurrentHashMap<>();
+    // every SuperWord, indexed by ID; guarded by the class lock, like the constructor
+    private static final ArrayList<SuperWord> byId = new ArrayList<>();
+
+    // for populating several words at once; bounded to match WordsAPI's limit
+    private static final ExecutorService populatePool = Executors.newFixedThreadPool(MAX_CONCURRENT_REQUESTS,
+            runnable -> {
+                Thread thread = new Thread(runnable, "populate");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private static final ThreadLocal<Boolean> inPopulatePool = ThreadLocal.withInitial(() -> false);
+
+    // every word that WordsAPI is known to recognise, for spotting misspellings
+    private static BKTree<String> knownWords = new BKTree<>(BKTree::editDistance);
+    private static final int MAX_SPELLING_DISTANCE = 2;
+
+    // results of comparing pairs of words (other than for perfect rhyme, which is indexed)
+    private static final int RHYME_CACHE_CAPACITY = 50_000;
+    private static BoundedCache<RhymePair, Boolean> rhymeCache = new BoundedCache<>(RHYME_CACHE_CAPACITY);
 
     private static Set<String> knownFields = new HashSet<>(
             Arrays.asList("word", "results", "syllables", "pronunciation", "frequency", "rhymes", "success",
                     "message"));
 
-    // true iff built from a WordsAPI query
-    private boolean populated = false;
+    // small and dense, so that sets of words can be bitmaps (see Lexicon)
+    private final int id;
+    // true iff built from a WordsAPI query; only set once the other fields are
+    private volatile boolean populated = false;
     // constructed from IPA (if available)
     private Pronunciation pronunciation;
+    // true iff WordsAPI had no usable pronunciation, so it was estimated from the spelling
+    private boolean pronunciationEstimated = false;
+    // estimated from the spelling while unpopulated, so it need not be estimated again
+    private volatile List<SubPronunciation> spellingEstimate;
     // a fallback for syllable count if no IPA
     private ArrayList<String> plaintextSyllables = new ArrayList<>();
     // SubWords, grouped by part of speech
     private EnumMap<PartOfSpeech, ArrayList<SubWord>> subWords = new EnumMap<>(PartOfSpeech.class);
+    // suggestion pools that can be offered, grouped by part of speech
+    private EnumMap<PartOfSpeech, EnumSet<SuggestionPool>> availablePools = new EnumMap<>(PartOfSpeech.class);
+    // the pronunciation that each part of speech resolves to, and those of this word's parts of speech
+    private EnumMap<PartOfSpeech, SubPronunciation> pronunciationByPoS = new EnumMap<>(PartOfSpeech.class);
+    private ArrayList<SubPronunciation> distinctSubPronunciations = new ArrayList<>();
+    // the stress pattern of each distinct pronunciation, and of each part of speech
+    private ArrayList<StressSignature> stressSignatures = new ArrayList<>();
+    private EnumMap<PartOfSpeech, StressSignature> stressSignatureByPoS = new EnumMap<>(PartOfSpeech.class);
 
     /**
      * Attempts to get a cached word, before returning a new placeholder.
@@ -58,7 +111,7 @@ public class SuperWord extends Token {
      * @param plaintext
      * @return
      */
-    public static SuperWord getSuperWord(String plaintext) {
+    public static synchronized SuperWord getSuperWord(String plaintext) {
         String cleanedPlaintext = Normalizer.normalize(plaintext, Form.NFD).replaceAll("\\p{M}", "");
 
         if (cachePopulated.containsKey(cleanedPlaintext)) {
@@ -74,13 +127,18 @@ public class SuperWord extends Token {
      * Sends a request for this word to WordsAPI, and attempts to populate this
      * SuperWord's fields from the response. Updates the populated SuperWord cache.
      */
-    public void populate() {
+    public synchronized void populate() {
         if (populated) {
             LOG.writeTempLog(String.format("Attempted to repopulate \"%s\": %s", plaintext, this.toString()));
             return;
         }
 
         JSONObject word = WordsAPI.getWord(plaintext);
+        if (!WordsAPI.isCached(plaintext)) {
+            // the lookup was interrupted, so leave this word to be populated later
+            LOG.writeTempLog(String.format("Populating \"%s\" was interrupted", plaintext));
+            return;
+        }
 
         Set<String> unrecognisedFields = new HashSet<>(word.keySet());
         unrecognisedFields.removeAll(knownFields);
@@ -144,19 +202,169 @@ public class SuperWord extends Token {
             }
         }
 
+        if (pronunciation == null) {
+            pronunciation = GraphemeToPhoneme.estimate(plaintext);
+            pronunciationEstimated = pronunciation != null;
+            LOG.writePersistentLog(String.format("Pronunciation of \"%s\" was estimated from its spelling: %s",
+                    plaintext, pronunciationEstimated ? GraphemeToPhoneme.toIPA(plaintext) : "failed"));
+        }
+
         if (word.has("results")) {
             JSONArray resultsArray = word.getJSONArray("results");
             this.setSubWords(resultsArray);
+            knownWords.add(plaintext.toLowerCase());
         } else {
             subWords.put(PartOfSpeech.UNKNOWN, null); // so that matchesWith has something to iterate over
             LOG.writePersistentLog(String.format("Results of \"%s\" was missing", plaintext));
         }
 
+        setDistinctSubPronunciations();
+        // a word WordsAPI knows nothing about is likely a typo, so is not offered to others as a rhyme
+        boolean indexed = !pronunciationEstimated || word.has("results");
+        if (indexed) {
+            RhymeIndex.register(this, pronunciation);
+            RhymeDictionary.add(this, pronunciation);
+        }
         populated = true;
         cachePopulated.put(this.plaintext, this);
+        if (indexed) {
+            Lexicon.register(this);
+        }
         LOG.writeTempLog(String.format("Populated and cached \"%s\": %s", plaintext, this.toString()));
     }
 
+    /**
+     * Checks this word against the words known to be recognised by WordsAPI before
+     * populating it. If the word is unknown but close to known words, it is
+     * likely a misspelling, so no request is sent and the candidates are returned
+     * instead, leaving the caller to decide whether {@link #populate()} is still
+     * worth a request.
+     * 
+     * @param checkSpelling whether or not to check for misspellings first.
+     * @return "did you mean" candidates if the word was not populated, otherwise
+     *         an empty list.
+     */
+    public ArrayList<String> populate(boolean checkSpelling) {
+        if (checkSpelling && !populated && !WordsAPI.isCached(plaintext)) {
+            ArrayList<String> candidates = getSpellingSuggestions();
+            if (!candidates.isEmpty()) {
+                LOG.writeTempLog(String.format("\"%s\" is a likely misspelling of one of %s", plaintext, candidates));
+                return candidates;
+            }
+        }
+        populate();
+        return new ArrayList<>();
+    }
+
+    /**
+     * Finds known words within a small edit distance of this one, without
+     * querying WordsAPI. Short words are only matched to words one edit away.
+     * 
+     * @return the closest known words first, or an empty list if this word is
+     *         known (or nothing known is close to it).
+     */
+    public ArrayList<String> getSpellingSuggestions() {
+        ArrayList<String> candidates = new ArrayList<>();
+        String lowercase = plaintext.toLowerCase();
+        if (knownWords.contains(lowercase)) {
+            return candidates;
+        }
+
+        int maxDistance = lowercase.length() <= 4 ? 1 : MAX_SPELLING_DISTANCE;
+        for (Pair<String, Integer> match : knownWords.search(lowercase, maxDistance)) {
+            candidates.add(match.one());
+        }
+        return candidates;
+    }
+
+    /**
+     * Populates several words at once, with at most
+     * {@link config.Configuration#MAX_CONCURRENT_REQUESTS} populating at a time.
+     * Duplicates and words that are already populated are skipped. Blocks until
+     * every word has been populated; if interrupted, the words not yet started are
+     * cancelled and those in flight are interrupted before returning. An
+     * interrupted lookup is not cached, so its word is left unpopulated.
+     * 
+     * @param words the words to populate.
+     */
+    public static void populateAll(Collection<SuperWord> words) {
+        populateAll(words, SearchBudget.unlimited());
+    }
+
+    /**
+     * As {@link #populateAll(Collection)}, but only populates words that are
+     * cached or can be charged to the budget, and stops waiting at its deadline.
+     * Words that were not populated in time are left unpopulated, since a lookup
+     * that is cancelled is not cached.
+     * 
+     * @param words  the words to populate.
+     * @param budget the time and requests that may be spent.
+     */
+    public static void populateAll(Collection<SuperWord> words, SearchBudget budget) {
+        LinkedHashSet<SuperWord> toPopulate = new LinkedHashSet<>();
+        int overBudget = 0;
+        for (SuperWord word : words) {
+            if (!word.populated && !toPopulate.contains(word)) {
+                if (WordsAPI.isCached(word.plaintext) || budget.tryCharge()) {
+                    toPopulate.add(word);
+                } else {
+                    overBudget++;
+                }
+            }
+        }
+        if (overBudget > 0) {
+            LOG.writeTempLog(String.format("populateAll() skipped %d word(s) over budget %s", overBudget, budget));
+        }
+        if (toPopulate.isEmpty()) {
+            return;
+        }
+        if (toPopulate.size() == 1 || inPopulatePool.get()) {
+            // not worth a hand-off, or waiting on the pool from within it could deadlock
+            for (SuperWord word : toPopulate) {
+                if (budget.remainingNanos() == 0 || Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                word.populate();
+            }
+            return;
+        }
+
+        ArrayList<Future<?>> futures = new ArrayList<>();
+        for (SuperWord word : toPopulate) {
+            futures.add(populatePool.submit(() -> {
+                inPopulatePool.set(true);
+                word.populate();
+            }));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get(budget.remainingNanos(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancelAll(futures);
+                LOG.writeTempLog("populateAll() was interrupted: " + e.getMessage());
+                return;
+            } catch (TimeoutException e) {
+                cancelAll(futures);
+                LOG.writeTempLog("populateAll() ran out of time: " + budget);
+                return;
+            } catch (CancellationException e) {
+                // cancelled by someone else; the word stays unpopulated
+            } catch (ExecutionException e) {
+                LOG.writeTempLog("populateAll() something went wrong: " + e.getCause());
+            }
+        }
+    }
+
+    /*
+     * Cancels lookups that have not finished, interrupting those in flight.
+     */
+    private static void cancelAll(List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+
     /**
      * For creating placeholders.
      * 
@@ -164,11 +372,30 @@ public class SuperWord extends Token {
      */
     private SuperWord(String plaintext) {
         super(plaintext);
+        this.id = byId.size();
+        byId.add(this);
         cachePlaceholder.put(this.plaintext, this);
     }
 
     /**
-     * For getting lots of SuperWords from the cache.
+     * @return this word's ID, which is unique to its plaintext for the rest of
+     *         the session.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @param id the ID of a word.
+     * @return the word, or null if no word has the ID.
+     */
+    public static synchronized SuperWord getById(int id) {
+        return id >= 0 && id < byId.size() ? byId.get(id) : null;
+    }
+
+    /**
+     * For getting lots of SuperWords from the cache. The plaintexts are assumed
+     * to have come from WordsAPI, so are added to the known words.
      * 
      * @param plaintexts generically typed, but must have String elements.
      * @return the SuperWords returned.
@@ -177,6 +404,7 @@ public class SuperWord extends Token {
         ArrayList<SuperWord> list = new ArrayList<>();
         for (Object plaintext : plaintexts) {
             list.add(getSuperWord((String) plaintext));
+            knownWords.add(((String) plaintext).toLowerCase()); // named by WordsAPI, so recognised
         }
         return list;
     }
@@ -197,6 +425,13 @@ public class SuperWord extends Token {
                 PartOfSpeech pos = word.getPartOfSpeech();
                 subWords.compute(pos,
                         (PartOfSpeech key, ArrayList<SubWord> subWordList) -> addToNull(subWordList, word));
+                EnumSet<SuggestionPool> pools = availablePools.computeIfAbsent(pos,
+                        key -> EnumSet.noneOf(SuggestionPool.class));
+                for (SuggestionPool pool : SuggestionPool.values()) {
+                    if (word.hasSuggestionPool(pool)) {
+                        pools.add(pool);
+                    }
+                }
             } catch (ClassCastException e) {
                 LOG.writePersistentLog(
                         String.format("Results of \"%s\" contained an invalid entry: \"%s\"", plaintext, result));
@@ -232,6 +467,22 @@ public class SuperWord extends Token {
 
     // getters
 
+    /**
+     * @return true if this word has been populated from a WordsAPI query.
+     */
+    public boolean isPopulated() {
+        return populated;
+    }
+
+    /**
+     * @return true if WordsAPI had no usable pronunciation for this word, so its
+     *         pronunciation was estimated from its spelling by
+     *         {@link words.GraphemeToPhoneme}.
+     */
+    public boolean isPronunciationEstimated() {
+        return pronunciationEstimated;
+    }
+
     /**
      * Gets the collection of {@link words.SubWord}s for a given part of speech.
      * 
@@ -330,7 +581,10 @@ public class SuperWord extends Token {
      * Determines if this superword's {@link words.SubWord}s of the desired part of
      * speech have a suggestion pool, populating it first if necessary.
      * 
-     * Used to disable/enable checkboxes in the GUI.
+     * Used to disable/enable checkboxes in the GUI. The answer is looked up from
+     * flags stored when this word was populated, so expanded pools (e.g.
+     * {@link SuggestionPool#COMMONLY_TYPED}) are not fetched until they are
+     * actually requested.
      * 
      * @param pool the suggestion pool to check for.
      * @param pos  the part of speech to get {@link words.SubWord}s from.
@@ -341,23 +595,8 @@ public class SuperWord extends Token {
         if (!this.populated) {
             this.populate();
         }
-        switch (pool) {
-            case COMMONLY_TYPED:
-                // if not a sub-type, no super-types to query
-                return getSuggestionPool(SuggestionPool.TYPE_OF, pos, false) != null;
-            case COMMON_CATEGORIES:
-                // if not in a category, cannot find others of same category
-                return getSuggestionPool(SuggestionPool.IN_CATEGORY, pos, false) != null;
-            case HAS_PARTS:
-            case PART_OF:
-            case SIMILAR_TO:
-            case SYNONYMS:
-            case HAS_TYPES:
-            case TYPE_OF:
-            default:
-                return getSuggestionPool(pool, pos, false) != null;
-        }
-
+        EnumSet<SuggestionPool> pools = availablePools.get(pos);
+        return pools != null && pools.contains(pool);
     }
 
     /**
@@ -377,6 +616,7 @@ public class SuperWord extends Token {
         ArrayList<SuperWord> suggestionPool = null;
         ArrayList<SubWord> subWordsList = getSubWords(pos, inclusiveUnknown);
         if (subWordsList != null) {
+            prefetchExpansion(pool, subWordsList);
             for (SubWord subWord : subWordsList) {
                 suggestionPool = addAllToNull(suggestionPool, subWord.getSuggestionPool(pool));
             }
@@ -385,7 +625,28 @@ public class SuperWord extends Token {
     }
 
     /*
-     * Collates multiple suggestion pools into one, ordering elements in descending
+     * Expanded pools (e.g. commonly typed) need every word in the pool they are
+     * expanded from to be populated. Those words are often shared between senses,
+     * so they are gathered across all the SubWords and populated together.
+     */
+    private static void prefetchExpansion(SuggestionPool pool, ArrayList<SubWord> subWordsList) {
+        SuggestionPool source = SubWord.getExpansionSource(pool);
+        if (source == null) {
+            return;
+        }
+
+        LinkedHashSet<SuperWord> toExpand = new LinkedHashSet<>();
+        for (SubWord subWord : subWordsList) {
+            ArrayList<SuperWord> sourcePool = subWord.getSuggestionPool(source);
+            if (sourcePool != null && !subWord.isExpanded(pool)) {
+                toExpand.addAll(sourcePool);
+            }
+        }
+        populateAll(toExpand);
+    }
+
+    /*
+     * Collates multiple suggestion pools into one, ranking elements in descending
      * order of the number of times they occured in the unfiltered pools.
      * 
      * @param thisPos the part of speech to use.
@@ -393,9 +654,9 @@ public class SuperWord extends Token {
      * @param params the suggestions pools to use, and whether or not to be
      * inclusive of unknowns.
      * 
-     * @return a collection of unique suggestions.
+     * @return a queue of unique suggestions.
      */
-    private ArrayList<SuperWord> getAggregatedSuggestions(PartOfSpeech thisPos, SuggestionPoolParameters params) {
+    private RankedQueue<SuperWord> getAggregatedSuggestions(PartOfSpeech thisPos, SuggestionPoolParameters params) {
         ArrayList<ArrayList<SuperWord>> suggestions = new ArrayList<>();
         for (SuggestionPool pool : SuggestionPool.values()) {
             if (params.includes(pool)) {
@@ -415,72 +676,35 @@ public class SuperWord extends Token {
             }
         }
 
-        ArrayList<SuperWord> combined = combineListsPrioritiseDuplicates(suggestions);
-        if (combined != null) {
-            combined.remove(this); // prevent suggesting the original word
-        }
+        RankedQueue<SuperWord> combined = new RankedQueue<>(suggestions);
+        combined.remove(this); // prevent suggesting the original word
 
-        LOG.writeTempLog(String.format("Combined suggestions for \"%s\" (%s) including %s: %s", plaintext, thisPos,
-                params.toString(), combined));
+        LOG.writeTempLog(String.format("Combined %d suggestions for \"%s\" (%s) including %s", combined.size(),
+                plaintext, thisPos, params.toString()));
         return combined;
     }
 
-    /*
-     * Removes suggestions that fail to meet rhyme and syllable count requirements.
-     * 
-     * @param suggestions the unfiltered suggestions.
-     * 
-     * @param thisPos the part of speech to use for suggestions when making
-     * rhyme comparisons.
-     * 
-     * @param params the types of rhyme to match, the words to match against and
-     * their parts of speech, and whether or not to filter by syllable count.
+    /**
+     * Starts a search for suggestions to substitute this word, based on the
+     * passed parameters. Nothing is filtered until the search is asked for
+     * results.
      * 
-     * @return the filtered set of suggestions.
+     * @param thisPos          the part of speech of this word, which the
+     *                         suggestions should match; also used for rhyme
+     *                         recognition.
+     * @param suggestionParams which suggestion pools (e.g. synonyms, parts of) to
+     *                         draw from, and if SubWords with unknown PoS should be
+     *                         included.
+     * @param filterParams     the type(s) of desired rhyme and the word(s) to rhyme
+     *                         with, and if syllable count should be maintained.
+     * @return the search.
      */
-    private ArrayList<SuperWord> filterSuggestions(ArrayList<SuperWord> suggestions, PartOfSpeech thisPos,
-            FilterParameters params) {
-
-        if (suggestions == null) {
-            return new ArrayList<>();
-        }
-
-        ArrayList<SuperWord> filtered = new ArrayList<>(suggestions);
-
-        for (SuperWord suggestion : suggestions) {
-            boolean shouldRhyme = false;
-            boolean rhymes = false;
-            boolean syllableCountMatch = true;
-
-            // check that at least one rhyme subtype passes
-            // ... for at least one corresponding matchWith
-            for (RhymeType filter : RhymeType.values()) {
-                List<SuperWord> matchWithList;
-                if ((matchWithList = params.getMatchWith(filter)) != null) {
-                    shouldRhyme = true;
-                    for (SuperWord matchWith : matchWithList) {
-                        if (suggestion.rhymesWithWrapper(filter, matchWith, thisPos, params.getMatchPoS())) {
-                            rhymes = true;
-                            break;
-                        }
-                    }
-                }
-                if (rhymes)
-                    break;
-            }
-
-            // check that syllable count matches (if required)
-            if (params.syllableCountFilter() && getSyllableCount(thisPos) != suggestion.getSyllableCount(null)) {
-                syllableCountMatch = false;
-            }
-
-            if (shouldRhyme && !rhymes || !syllableCountMatch)
-                filtered.remove(suggestion);
+    public SuggestionSearch searchSuggestions(PartOfSpeech thisPos, SuggestionPoolParameters suggestionParams,
+            FilterParameters filterParams) {
+        if (!this.populated) {
+            this.populate();
         }
-
-        LOG.writeTempLog(String.format("Filtered suggestions for \"%s\" (%s) including %s: %s", plaintext, thisPos,
-                params.toString(), filtered));
-        return filtered;
+        return new SuggestionSearch(this, thisPos, filterParams, getAggregatedSuggestions(thisPos, suggestionParams));
     }
 
     /**
@@ -499,11 +723,7 @@ public class SuperWord extends Token {
      */
     public ArrayList<SuperWord> getFilteredSuggestions(PartOfSpeech thisPos, SuggestionPoolParameters suggestionParams,
             FilterParameters filterParams) {
-        if (!this.populated) {
-            this.populate();
-        }
-        ArrayList<SuperWord> unfiltered = getAggregatedSuggestions(thisPos, suggestionParams);
-        return filterSuggestions(unfiltered, thisPos, filterParams);
+        return searchSuggestions(thisPos, suggestionParams, filterParams).next(Integer.MAX_VALUE);
     }
 
     @Override
@@ -573,60 +793,191 @@ public class SuperWord extends Token {
 
     }
 
-    private static boolean matchesWith(RhymeType rhmyeType,
-            String plaintext1, PartOfSpeech pos1, SubPronunciation subPronunciation1,
-            String plaintext2, PartOfSpeech pos2, SubPronunciation subPronunciation2) {
-        if (subPronunciation1 == null) {
-            LOG.writePersistentLog(
-                    String.format("\"%s\" (%s) did not have a pronunciation for \"%s\" (%s) to match against",
-                            plaintext1, pos1, plaintext2, pos2));
-            return false;
+    /*
+     * The key of a pair of words in the rhyme cache. Every type of rhyme is
+     * symmetric, so the pair is put in a fixed order (by plaintext, which is unique
+     * per SuperWord).
+     */
+    private static final class RhymePair {
+        private final RhymeType rhymeType;
+        private final SuperWord word1;
+        private final PartOfSpeech pos1;
+        private final SuperWord word2;
+        private final PartOfSpeech pos2;
+
+        private RhymePair(RhymeType rhymeType, SuperWord word1, PartOfSpeech pos1, SuperWord word2,
+                PartOfSpeech pos2) {
+            boolean swap = word1.plaintext.compareTo(word2.plaintext) > 0;
+            this.rhymeType = rhymeType;
+            this.word1 = swap ? word2 : word1;
+            this.pos1 = swap ? pos2 : pos1;
+            this.word2 = swap ? word1 : word2;
+            this.pos2 = swap ? pos1 : pos2;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof RhymePair)) {
+                return false;
+            }
+            RhymePair o = (RhymePair) other;
+            return rhymeType == o.rhymeType && word1 == o.word1 && pos1 == o.pos1 && word2 == o.word2
+                    && pos2 == o.pos2;
         }
-        if (subPronunciation2 == null) {
-            LOG.writePersistentLog(
-                    String.format("\"%s\" (%s) did not have a pronunciation for \"%s\" (%s) to match against",
-                            plaintext2, pos2, plaintext1, pos1));
-            return false;
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(rhymeType, word1.plaintext, pos1, word2.plaintext, pos2);
+        }
+    }
+
+    /*
+     * Sets the pronunciations used for rhyming, once populated. Words with no
+     * pronunciation for some part of speech are logged here, once, rather than on
+     * every comparison.
+     */
+    private void setDistinctSubPronunciations() {
+        if (pronunciation == null) {
+            return;
+        }
+        LinkedHashMap<SubPronunciation, EnumSet<PartOfSpeech>> distinct = pronunciation
+                .getDistinctSubPronunciations();
+        EnumSet<PartOfSpeech> covered = EnumSet.noneOf(PartOfSpeech.class);
+        for (Map.Entry<SubPronunciation, EnumSet<PartOfSpeech>> entry : distinct.entrySet()) {
+            StressSignature signature = StressSignature.of(entry.getKey());
+            for (PartOfSpeech pos : entry.getValue()) {
+                pronunciationByPoS.put(pos, entry.getKey());
+                if (signature != null) {
+                    stressSignatureByPoS.put(pos, signature);
+                }
+            }
+            if (!Collections.disjoint(entry.getValue(), subWords.keySet())) {
+                distinctSubPronunciations.add(entry.getKey());
+                covered.addAll(entry.getValue());
+                if (signature != null && !stressSignatures.contains(signature)) {
+                    stressSignatures.add(signature);
+                }
+            }
+        }
+        for (PartOfSpeech pos : subWords.keySet()) {
+            if (!covered.contains(pos)) {
+                LOG.writePersistentLog(
+                        String.format("\"%s\" (%s) did not have a pronunciation to match against", plaintext, pos));
+            }
         }
-        return subPronunciation1.matchesWith(rhmyeType, subPronunciation2);
     }
 
     /**
-     * Iterates over the parts of speech of both words (worst case is full cross
-     * product evaluation) and returns true if any part of speech pairing produces a
-     * rhyme.
+     * Gets each distinct pronunciation of this word's parts of speech, populating
+     * it first if needed. Most parts of speech share the same pronunciation, so
+     * this is usually a single element.
      * 
-     * @param filter the type of matching to perform (e.g. perfect rhyme).
-     * @param other  the word to match against.
-     * @return true if the two words match for any part of speech pair.
+     * @return the distinct {@link words.Pronunciation.SubPronunciation}s, which is
+     *         empty if there is no pronunciation data.
      */
-    public boolean matchesWithWrapper(RhymeType filter, SuperWord other) {
-        if (!this.populated)
+    public List<SubPronunciation> getDistinctSubPronunciations() {
+        if (!this.populated) {
             this.populate();
-        if (!other.populated)
-            other.populate();
+        }
+        return Collections.unmodifiableList(distinctSubPronunciations);
+    }
 
-        if (this.pronunciation == null || other.pronunciation == null) {
-            return false;
+    /**
+     * Gets each distinct pronunciation of this word without waiting on WordsAPI:
+     * those it was populated with, or if it has not been populated, one estimated
+     * from its spelling (see {@link words.GraphemeToPhoneme}).
+     * 
+     * @return the distinct {@link words.Pronunciation.SubPronunciation}s, which is
+     *         empty if there is no pronunciation data and none could be estimated.
+     */
+    public List<SubPronunciation> getPronunciationsWithoutLookup() {
+        if (this.populated) {
+            return Collections.unmodifiableList(distinctSubPronunciations);
+        }
+        List<SubPronunciation> estimate = spellingEstimate;
+        if (estimate == null) {
+            Pronunciation estimated = GraphemeToPhoneme.estimate(plaintext);
+            estimate = estimated == null ? List.of()
+                    : List.copyOf(estimated.getDistinctSubPronunciations().keySet());
+            spellingEstimate = estimate;
+        }
+        return estimate;
+    }
+
+    /**
+     * Gets the stress pattern of this word, populating it first if needed.
+     * 
+     * @param pos the part of speech to get the pattern of; if null or not known,
+     *            the pattern of this word's first pronunciation.
+     * @return the pattern, or null if there is no pronunciation data.
+     */
+    public StressSignature getStressSignature(PartOfSpeech pos) {
+        if (!this.populated) {
+            this.populate();
+        }
+        if (pos != null && stressSignatureByPoS.containsKey(pos)) {
+            return stressSignatureByPoS.get(pos);
         }
+        return stressSignatures.isEmpty() ? null : stressSignatures.get(0);
+    }
 
-        for (PartOfSpeech pos1 : subWords.keySet()) {
-            SubPronunciation subPronunciation1 = this.getSubPronunciation(pos1);
-            for (PartOfSpeech pos2 : other.subWords.keySet()) {
-                SubPronunciation subPronunciation2 = other.getSubPronunciation(pos2);
-                if (matchesWith(filter, this.plaintext, pos1, subPronunciation1, other.plaintext, pos2,
-                        subPronunciation2)) {
-                    return true;
-                }
+    /*
+     * True if this word, as the part of speech (or any part of speech if null or
+     * not known), would keep the meter of the word it replaces.
+     */
+    boolean keepsMeter(StressSignature meter, PartOfSpeech pos) {
+        if (!this.populated) {
+            this.populate();
+        }
+        if (pos != null && stressSignatureByPoS.containsKey(pos)) {
+            return meter.admits(stressSignatureByPoS.get(pos));
+        }
+        for (StressSignature signature : stressSignatures) {
+            if (meter.admits(signature)) {
+                return true;
             }
         }
         return false;
     }
 
+    /*
+     * The pronunciations to compare for a part of speech, or for every part of
+     * speech of this word if it is null.
+     */
+    List<SubPronunciation> getRhymingPronunciations(PartOfSpeech pos) {
+        if (pos == null) {
+            return distinctSubPronunciations;
+        }
+        SubPronunciation sub = pronunciationByPoS.get(pos);
+        return sub == null ? List.of() : List.of(sub);
+    }
+
+    /**
+     * @return the size and hit rate of the cache of rhyme comparisons, for
+     *         logging.
+     */
+    public static String getRhymeCacheStatistics() {
+        return rhymeCache.toString();
+    }
+
+    /**
+     * Returns true if any pronunciation of this word rhymes with any of the other
+     * word's. Each distinct pair of pronunciations is only compared once.
+     * 
+     * @param filter the type of matching to perform (e.g. perfect rhyme).
+     * @param other  the word to match against.
+     * @return true if the two words match for any part of speech pair.
+     */
+    public boolean matchesWithWrapper(RhymeType filter, SuperWord other) {
+        return rhymesWithWrapper(filter, other, null, null);
+    }
+
     /**
      * Uses specific parts of speech if arguments are not null. For null
-     * PartOfSpeech arguments, iterates over all parts of speech of corresponding
-     * word.
+     * PartOfSpeech arguments, uses all of the corresponding word's distinct
+     * pronunciations. Perfect rhymes between indexed words are looked up in the
+     * {@link words.RhymeIndex}; other results are cached, for either order of the
+     * words.
      * 
      * @param filter the type of matching to perform (e.g. perfect rhyme).
      * @param other  the word to match against.
@@ -640,33 +991,25 @@ public class SuperWord extends Token {
         if (!other.populated)
             other.populate();
 
-        if (pos1 == null && pos2 == null) {
-            return matchesWithWrapper(filter, other);
-        } else if (pos1 != null && pos2 != null) {
-            SubPronunciation subPronunciation1 = this.getSubPronunciation(pos1);
-            SubPronunciation subPronunciation2 = other.getSubPronunciation(pos2);
-            return matchesWith(filter, this.plaintext, pos1, subPronunciation1, other.plaintext, pos2,
-                    subPronunciation2);
-        } else if (pos1 != null) {
-            SubPronunciation subPronunciation1 = this.getSubPronunciation(pos1);
-            for (PartOfSpeech pos2b : other.subWords.keySet()) {
-                SubPronunciation subPronunciation2 = other.getSubPronunciation(pos2b);
-                if (matchesWith(filter, this.plaintext, pos1, subPronunciation1, other.plaintext, pos2,
-                        subPronunciation2)) {
-                    return true;
-                }
-            }
-        } else {
-            SubPronunciation subPronunciation2 = other.getSubPronunciation(pos2);
-            for (PartOfSpeech pos1b : this.subWords.keySet()) {
-                SubPronunciation subPronunciation1 = this.getSubPronunciation(pos1b);
-                if (matchesWith(filter, this.plaintext, pos1, subPronunciation1, other.plaintext, pos2,
-                        subPronunciation2)) {
-                    return true;
+        if (this.pronunciation == null || other.pronunciation == null) {
+            return false;
+        }
+        // a word left out of the index (see populate) is compared pair by pair instead
+        if (filter == RhymeType.PERFECT_RHYME && RhymeIndex.isRegistered(this) && RhymeIndex.isRegistered(other)) {
+            return RhymeIndex.perfectlyRhymes(this, pos1 == null ? subWords.keySet() : EnumSet.of(pos1),
+                    other, pos2 == null ? other.subWords.keySet() : EnumSet.of(pos2));
+        }
+
+        return rhymeCache.computeIfAbsent(new RhymePair(filter, this, pos1, other, pos2), key -> {
+            for (SubPronunciation sub1 : this.getRhymingPronunciations(pos1)) {
+                for (SubPronunciation sub2 : other.getRhymingPronunciations(pos2)) {
+                    if (sub1.matchesWith(filter, sub2)) {
+                        return true;
+                    }
                 }
             }
-        }
-        return false;
+            return false;
+        });
     }
 
 }
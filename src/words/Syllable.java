@@ -43,6 +43,10 @@ public class Syllable {
         return this.nucleus;
     }
 
+    public String getOnset() {
+        return this.onset;
+    }
+
     public String getCoda() {
         return this.coda;
     }
@@ -0,0 +1,104 @@
+package words;
+
+/**
+ * This class estimates the number of syllables of a word from its spelling, by
+ * counting groups of vowel letters and correcting for common silent and split
+ * vowels. It is much cheaper than {@link words.GraphemeToPhoneme}, and needs no
+ * WordsAPI request, so it is used to reject suggestions that are clearly the
+ * wrong length before they are looked up.
+ *
+ * The estimate is usually exact, and rarely out by more than one.
+ *
+ * @author 190021081
+ */
+public abstract class SyllableEstimator {
+
+    private static final String VOWEL_LETTERS = "aeiouy";
+    // vowel pairs that are usually two syllables, e.g. "ia" in "piano"
+    private static final String[] SPLIT_VOWELS = { "ia", "io", "iu", "eo", "ua", "uo" };
+    // letters after which a final "es" is a syllable, e.g. "horses"
+    private static final String SIBILANT_LETTERS = "sxzhgc";
+
+    private static boolean isVowelLetter(String word, int i) {
+        char chr = word.charAt(i);
+        // y starting a word or following a vowel is a consonant, as in "yes" and "day"
+        if (chr == 'y') {
+            return i > 0 && VOWEL_LETTERS.indexOf(word.charAt(i - 1)) < 0;
+        }
+        return VOWEL_LETTERS.indexOf(chr) >= 0;
+    }
+
+    /*
+     * Estimates the syllables of a single lower case word of letters.
+     */
+    private static int estimateWord(String word) {
+        int length = word.length();
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            if (isVowelLetter(word, i) && (i == 0 || !isVowelLetter(word, i - 1))) {
+                count++;
+            }
+        }
+
+        for (String pair : SPLIT_VOWELS) {
+            int at = word.indexOf(pair);
+            // not softened consonants, as in "nation", "social", "region" and "quarter"
+            if (at > 0 && "tscgq".indexOf(word.charAt(at - 1)) < 0) {
+                count++;
+            }
+        }
+
+        if (count > 1 && length > 2) {
+            char last = word.charAt(length - 1);
+            char beforeLast = word.charAt(length - 2);
+            if (last == 'e' && beforeLast != 'e' && !(beforeLast == 'l' && !isVowelLetter(word, length - 3))) {
+                count--; // silent e, as in "make" but not "table"
+            } else if (last == 's' && beforeLast == 'e' && length > 3
+                    && SIBILANT_LETTERS.indexOf(word.charAt(length - 3)) < 0 && !isVowelLetter(word, length - 3)) {
+                count--; // silent e of "es", as in "makes" but not "horses"
+            } else if (last == 'd' && beforeLast == 'e' && length > 3 && "td".indexOf(word.charAt(length - 3)) < 0
+                    && !isVowelLetter(word, length - 3)) {
+                count--; // silent e of "ed", as in "played" but not "wanted"
+            }
+        }
+        return Math.max(1, count);
+    }
+
+    /**
+     * Estimates the number of syllables of a word or phrase. Words are separated
+     * by spaces or hyphens, and characters other than letters are ignored.
+     *
+     * @param plaintext the word or phrase.
+     * @return the estimated number of syllables; 0 if there are no letters.
+     */
+    public static int estimate(String plaintext) {
+        int count = 0;
+        StringBuilder letters = new StringBuilder();
+        for (int i = 0; i <= plaintext.length(); i++) {
+            char chr = i < plaintext.length() ? Character.toLowerCase(plaintext.charAt(i)) : ' ';
+            if (chr >= 'a' && chr <= 'z') {
+                letters.append(chr);
+            } else if ((chr == ' ' || chr == '-') && letters.length() > 0) {
+                count += estimateWord(letters.toString());
+                letters.setLength(0);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks whether a word may have the target number of syllables, going by its
+     * estimated count. Words that are already populated pass, as their exact
+     * count costs nothing to check.
+     *
+     * @param word      the word.
+     * @param syllables the target number of syllables.
+     * @param tolerance how far from the target an estimate may be for a word to
+     *                  pass; if negative, every word passes.
+     * @return false if the word cannot have the target number of syllables.
+     */
+    public static boolean mayHaveSyllables(SuperWord word, int syllables, int tolerance) {
+        return tolerance < 0 || word.isPopulated() || Math.abs(estimate(word.getPlaintext()) - syllables) <= tolerance;
+    }
+
+}
@@ -7,23 +7,27 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandlers;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import static config.Configuration.LOG;
+import static config.Configuration.MAX_CONCURRENT_REQUESTS;
 
 /**
  * Handles interactions with WordsAPI. It contains a cache to prevent duplicate
- * requests.
+ * requests, and limits how many requests can be in flight at once so that
+ * concurrent callers do not flood the API.
  * 
  * @author 190021081
  */
 public class WordsAPI {
 
     static HttpClient client = HttpClient.newBuilder().proxy(ProxySelector.getDefault()).build();
-    static HashMap<String, JSONObject> cache = new HashMap<>();
+    static ConcurrentHashMap<String, JSONObject> cache = new ConcurrentHashMap<>();
+    static Semaphore inFlight = new Semaphore(MAX_CONCURRENT_REQUESTS, true);
 
     /*
      * Attempts to send a request to WordsAPI.
@@ -38,6 +42,7 @@ public class WordsAPI {
      */
     private static JSONObject sendRequest(URI uri) throws IOException, InterruptedException {
         JSONObject response;
+        inFlight.acquire();
         try {
             HttpRequest request = getRequest(uri);
             LOG.writeTempLog("sendRequest() sending request: " + request.toString());
@@ -51,6 +56,8 @@ public class WordsAPI {
         } catch (InterruptedException ie) {
             LOG.writeTempLog("sendRequest() something went wrong: " + ie.getMessage());
             throw ie;
+        } finally {
+            inFlight.release();
         }
     }
 
@@ -86,12 +93,22 @@ public class WordsAPI {
         return URI.create("https://wordsapiv1.p.rapidapi.com/words/" + word + "/" + _info);
     }
 
+    /**
+     * @param plaintext a plaintext word.
+     * @return true if a response for the word is already cached, i.e. getting it
+     *         would not cost a request.
+     */
+    public static boolean isCached(String plaintext) {
+        return cache.containsKey(plaintext);
+    }
+
     /**
      * Attempts to get a JSONObject word from WordsAPI. 
      * 
      * @param plaintext a plaintext word.
      * @return the JSONOject returned from WordsAPI, or {@code {word:<plaintext>}} if there
-     *         was no result.
+     *         was no result. If the calling thread is interrupted, the latter is
+     *         returned without being cached, and the thread stays interrupted.
      */
     public static JSONObject getWord(String plaintext) {
         if (cache.containsKey(plaintext)) {
@@ -109,7 +126,12 @@ public class WordsAPI {
                 return result;
             }
 
-        } catch (IOException | JSONException | InterruptedException e) {
+        } catch (InterruptedException e) {
+            // not cached, so that a cancelled lookup can be retried
+            Thread.currentThread().interrupt();
+            LOG.writeTempLog(String.format("getWord(%s) was interrupted", plaintext));
+            return result;
+        } catch (IOException | JSONException e) {
             LOG.writeTempLog(String.format("getWord(%s) something went wrong: %s", plaintext, e.getMessage()));
         }
 